@@ -0,0 +1,55 @@
+import generator.InstanceGenerator;
+import misc.Parser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Problem instances for the benchmarks, by name:
+ *   pcr            the bundled aquacorePCR instance
+ *   synthetic-N    an InstanceGenerator chip with N operations, sized so the operations fit, with 5% of all
+ *                  operation pairs interfering and a DAG-shaped communication graph; always built from the same seed
+ */
+class BenchmarkInstances {
+
+    private BenchmarkInstances() {
+    }
+
+    static DMFB_ReconfigPlacementProblem create(String name) throws Exception {
+        if (name.equals("pcr")) {
+            Parser parser = new Parser("aquacorePCR/arch.in", "aquacorePCR/ops.in", "aquacorePCR/graphs.in",
+                    "aquacorePCR/alpha.in");
+            return Main.newProblem(parser, DMFB_ReconfigPlacementProblem.DEFAULT_ARCHIVE_CAPACITY, false);
+        }
+        if (name.startsWith("synthetic-")) {
+            return synthetic(Integer.parseInt(name.substring("synthetic-".length())), 0.05, 42);
+        }
+        throw new IllegalArgumentException("unknown benchmark instance " + name);
+    }
+
+    private static DMFB_ReconfigPlacementProblem synthetic(int n, double density, long seed) throws Exception {
+        int side = Math.max(15, (int) Math.ceil(Math.sqrt(12.0 * n)));
+        InstanceGenerator generator = new InstanceGenerator();
+        generator.setGrid(side, side);
+        generator.setReservoirs(side / 2, side / 4);
+        generator.setResources(Math.max(2, n / 20), Math.max(2, n / 20), Math.max(2, n / 20));
+        generator.setOperations(n);
+        generator.setInterference(density);
+        generator.setShape(InstanceGenerator.Shape.DAG);
+        generator.setSeed(seed);
+
+        Path dir = Files.createTempDirectory("dmfb-benchmark");
+        try {
+            generator.generate(dir);
+            Parser parser = new Parser(dir.resolve("arch.in").toString(), dir.resolve("ops.in").toString(),
+                    dir.resolve("graphs.in").toString(), dir.resolve("alpha.in").toString());
+            return Main.newProblem(parser, DMFB_ReconfigPlacementProblem.DEFAULT_ARCHIVE_CAPACITY, false);
+        } finally {
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(dir);
+        }
+    }
+}
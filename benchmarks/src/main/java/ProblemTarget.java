@@ -0,0 +1,88 @@
+import benchmarks.EvaluationTarget;
+import genome.PackedGenome;
+import misc.Phenotype;
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Solution;
+
+import java.io.Serializable;
+
+/**
+ * EvaluationTarget over DMFB_ReconfigPlacementProblem; lives in the default package to reach its package-private
+ *  stages
+ */
+public class ProblemTarget implements EvaluationTarget {
+
+    private DMFB_ReconfigPlacementProblem problem;
+    private Solution[] solutions;
+    private Solution[] children;
+    private Serializable[] parentStates;
+    private Phenotype[] decoded;
+    private DMFB_ReconfigPlacementProblem.Workspace workspace;
+
+    @Override
+    public void setUp(String instance, int pool) throws Exception {
+        PRNG.setSeed(42);
+        problem = BenchmarkInstances.create(instance);
+        workspace = problem.getWorkspace();
+
+        solutions = new Solution[pool];
+        children = new Solution[pool];
+        parentStates = new Serializable[pool];
+        decoded = new Phenotype[pool];
+        for (int i = 0; i < pool; i++) {
+            Solution parent = problem.newSolution();
+            parent.getVariable(0).randomize();
+            problem.evaluate(parent);
+            solutions[i] = parent;
+            parentStates[i] = (Serializable) parent.getAttribute(DMFB_ReconfigPlacementProblem.STATE);
+
+            //the same genome with one operation moved
+            Solution child = parent.deepCopy();
+            PackedGenome genome = (PackedGenome) child.getVariable(0);
+            int op = PRNG.nextInt(genome.getNumberOfFields());
+            genome.setField(op, ~genome.getField(op));
+            children[i] = child;
+
+            decoded[i] = new Phenotype(genome.getNumberOfFields());
+            problem.decode((PackedGenome) parent.getVariable(0), decoded[i]);
+        }
+    }
+
+    @Override
+    public double evaluateFull(int i) {
+        Solution solution = solutions[i];
+        solution.removeAttribute(DMFB_ReconfigPlacementProblem.STATE);
+        problem.evaluate(solution);
+        return solution.getObjective(0);
+    }
+
+    @Override
+    public double evaluateDelta(int i) {
+        Solution child = children[i];
+        child.setAttribute(DMFB_ReconfigPlacementProblem.STATE, parentStates[i]);
+        problem.evaluate(child);
+        return child.getObjective(0);
+    }
+
+    @Override
+    public Object decode(int i) {
+        problem.decode((PackedGenome) solutions[i].getVariable(0), workspace.phenotype);
+        return workspace.phenotype;
+    }
+
+    @Override
+    public Object getConstraints(int i) {
+        problem.getConstraints(decoded[i], workspace);
+        return workspace.constraints;
+    }
+
+    @Override
+    public double dComm(int i) {
+        return problem.D_comm(decoded[i]);
+    }
+
+    @Override
+    public double tMix(int i) {
+        return problem.T_mix(decoded[i]);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of DMFB_ReconfigPlacementProblem's evaluation, end to end and stage by stage, on the bundled PCR
+ *  instance and on synthetic chips (see EvaluationTarget for what each benchmark covers)
+ *
+ * Each benchmark cycles through a fixed pool of random genomes so branch prediction cannot learn a single one.
+ *  Run with "-prof gc" to get allocation rates next to the times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    private static final int POOL = 256;
+
+    @Param({"pcr", "synthetic-100", "synthetic-400"})
+    public String instance;
+
+    private EvaluationTarget target;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        target = (EvaluationTarget) Class.forName("ProblemTarget").newInstance();
+        target.setUp(instance, POOL);
+    }
+
+    private int nextIndex() {
+        return (next++) & (POOL - 1);
+    }
+
+    @Benchmark
+    public double evaluateFull() {
+        return target.evaluateFull(nextIndex());
+    }
+
+    @Benchmark
+    public double evaluateDelta() {
+        return target.evaluateDelta(nextIndex());
+    }
+
+    @Benchmark
+    public Object decode() {
+        return target.decode(nextIndex());
+    }
+
+    @Benchmark
+    public Object getConstraints() {
+        return target.getConstraints(nextIndex());
+    }
+
+    @Benchmark
+    public double dComm() {
+        return target.dComm(nextIndex());
+    }
+
+    @Benchmark
+    public double tMix() {
+        return target.tMix(nextIndex());
+    }
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+/**
+ * The operations EvaluationBenchmark measures
+ *
+ * The problem class lives in the default package, which named packages (and so JMH benchmarks) cannot refer to, so
+ *  ProblemTarget implements this interface from the default package and the benchmark loads it by name.  Every
+ *  method works on entry i of a fixed pool of random genomes prepared by setUp().
+ */
+public interface EvaluationTarget {
+
+    /**
+     * @param instance "pcr" or "synthetic-N"
+     * @param pool number of genomes to prepare
+     */
+    void setUp(String instance, int pool) throws Exception;
+
+    /**
+     * evaluate() without parent state: decode, constraints, and objectives
+     */
+    double evaluateFull(int i);
+
+    /**
+     * evaluate() of a child differing from its evaluated parent in one operation
+     */
+    double evaluateDelta(int i);
+
+    /**
+     * decode() alone, including D_comm and T_mix
+     */
+    Object decode(int i);
+
+    /**
+     * getConstraints() on an already decoded placement
+     */
+    Object getConstraints(int i);
+
+    double dComm(int i);
+
+    double tMix(int i);
+}
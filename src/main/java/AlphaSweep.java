@@ -0,0 +1,145 @@
+import cache.EvaluationCache;
+import misc.Placement;
+import metrics.MetricsWriter;
+import misc.PlacementWriter;
+import operation.Operation;
+import termination.StoppingRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the optimisation once per alpha value over a single parsed instance
+ *
+ * Every run gets its own problem from DMFB_ReconfigPlacementProblem.withAlpha(), which shares the compiled instance
+ *  and only owns its archive (and cache), so the runs are independent and are spread over a fixed pool of threads.
+ *  A run that fails is reported in its result; the other runs carry on.
+ */
+class AlphaSweep {
+
+    private final DMFB_ReconfigPlacementProblem base;
+    private final int cacheCapacity;
+    private final StoppingRule stoppingRule;
+    private final MetricsWriter metrics;
+
+    /**
+     * @param base the problem whose instance is shared by every run
+     * @param cacheCapacity capacity of each run's evaluation cache, 0 for none
+     * @param stoppingRule when each run stops
+     * @param metrics where runs stream their per-generation metrics, or null
+     */
+    AlphaSweep(DMFB_ReconfigPlacementProblem base, int cacheCapacity, StoppingRule stoppingRule, MetricsWriter metrics) {
+        this.base = base;
+        this.cacheCapacity = cacheCapacity;
+        this.stoppingRule = stoppingRule;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param alphas the alpha values to run
+     * @param threads number of runs in flight at once
+     * @return one result per alpha, in the order given
+     */
+    List<Result> run(double[] alphas, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, alphas.length)));
+        try {
+            List<Future<Result>> futures = new ArrayList<>(alphas.length);
+            for (final double alpha : alphas) {
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return runOne(alpha);
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<>(alphas.length);
+            for (int i = 0; i < alphas.length; i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(alphas[i], null, 0, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result runOne(double alpha) {
+        DMFB_ReconfigPlacementProblem problem = base.withAlpha(alpha);
+        if (cacheCapacity > 0) {
+            problem.setEvaluationCache(new EvaluationCache(cacheCapacity));
+        }
+        long start = System.nanoTime();
+        try {
+            Main.optimise(problem, 1, stoppingRule, metrics, "alpha=" + alpha);
+        } catch (RuntimeException e) {
+            return new Result(alpha, null, problem.getNumberOfEvaluations(), (System.nanoTime() - start) / 1e9,
+                    String.valueOf(e));
+        }
+        return new Result(alpha, problem.getPlacements().getBest(), problem.getNumberOfEvaluations(),
+                (System.nanoTime() - start) / 1e9, null);
+    }
+
+    /**
+     * Formats the results as one file: a summary table, then for every alpha a "[alpha=a]" section holding its best
+     *  placement as placement.out would
+     */
+    static List<String> format(List<Result> results, List<Operation> operations) {
+        List<String> lines = new ArrayList<>();
+        lines.add("alpha\tObj\tD_comm\tT_mix\tevaluations\tseconds");
+        for (Result result : results) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(result.alpha).append("\t");
+            if (result.best != null) {
+                sb.append(result.best.getObj()).append("\t")
+                        .append(result.best.getD_comm()).append("\t")
+                        .append(result.best.getT_mix()).append("\t");
+            }
+            else {
+                sb.append("-\t-\t-\t");
+            }
+            sb.append(result.evaluations).append("\t").append(String.format("%.3f", result.seconds));
+            lines.add(sb.toString());
+        }
+        for (Result result : results) {
+            lines.add("");
+            lines.add("[alpha=" + result.alpha + "]");
+            if (result.error != null) {
+                lines.add("Failed: " + result.error);
+            }
+            else if (result.best == null) {
+                lines.add(PlacementWriter.NO_SOLUTION);
+            }
+            else {
+                lines.addAll(PlacementWriter.format(result.best, operations, result.alpha));
+            }
+        }
+        return lines;
+    }
+
+    static class Result {
+        final double alpha;
+        //null if no feasible placement was found or the run failed
+        final Placement best;
+        final long evaluations;
+        final double seconds;
+        //null unless the run failed
+        final String error;
+
+        Result(double alpha, Placement best, long evaluations, double seconds, String error) {
+            this.alpha = alpha;
+            this.best = best;
+            this.evaluations = evaluations;
+            this.seconds = seconds;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import cache.EvaluationCache;
+import metrics.MetricsWriter;
+import misc.FeasibilityRepair;
+import misc.Instance;
+import misc.InstanceCache;
+import misc.Parser;
+import misc.Placement;
+import misc.PlacementWriter;
+import termination.StoppingRule;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Places many instances in one JVM
+ *
+ * An instance is a folder holding arch.in, ops.in, graphs.in and alpha.in.  Instances are found by walking a
+ *  directory tree, or read from a manifest listing one folder per line (relative to the manifest; blank lines and
+ *  lines starting with # are skipped).  Every instance is one job on a work-stealing ForkJoinPool; a job parses its
+ *  instance, optimises it single-threaded, and writes its best placement to <out>/<instance path>/placement.out.
+ *  A job that fails is recorded as failed and the rest of the batch carries on.  summary.out in the output
+ *  directory lists the status, time, evaluations per second, and best objective of every job.
+ */
+class Batch {
+
+    static final String[] INSTANCE_FILES = {"arch.in", "ops.in", "graphs.in", "alpha.in"};
+
+    private final int archiveCapacity;
+    private final int cacheCapacity;
+    //-1 to keep the problem's default
+    private final int deltaLimit;
+    private final boolean biObjective;
+    private final FeasibilityRepair.Mode repair;
+    private final double seeding;
+    private final int memeticElites;
+    private final int memeticMillis;
+    private final StoppingRule stoppingRule;
+    private final MetricsWriter metrics;
+    private final InstanceCache instanceCache;
+
+    /**
+     * @param archiveCapacity number of distinct best placements kept per job
+     * @param cacheCapacity capacity of each job's evaluation cache, 0 for none
+     * @param deltaLimit delta evaluation limit for every job, -1 for the default
+     * @param biObjective optimise D_comm and T_mix separately
+     * @param repair whether and how every job repairs placements before evaluating them
+     * @param seeding fraction of every job's initial population that is constructed rather than random
+     * @param memeticElites number of elites every job refines by local search per generation, 0 for none
+     * @param memeticMillis time budget of that local search per generation
+     * @param stoppingRule when each job stops
+     * @param metrics where jobs stream their per-generation metrics, or null
+     * @param instanceCache where jobs find their instances compiled, or null to always parse them
+     */
+    Batch(int archiveCapacity, int cacheCapacity, int deltaLimit, boolean biObjective, FeasibilityRepair.Mode repair,
+          double seeding, int memeticElites, int memeticMillis, StoppingRule stoppingRule, MetricsWriter metrics,
+          InstanceCache instanceCache) {
+        this.archiveCapacity = archiveCapacity;
+        this.cacheCapacity = cacheCapacity;
+        this.deltaLimit = deltaLimit;
+        this.biObjective = biObjective;
+        this.repair = repair;
+        this.seeding = seeding;
+        this.memeticElites = memeticElites;
+        this.memeticMillis = memeticMillis;
+        this.stoppingRule = stoppingRule;
+        this.metrics = metrics;
+        this.instanceCache = instanceCache;
+    }
+
+    /**
+     * @param source a directory to search, or a manifest file
+     * @return the instance folders, in a stable order
+     */
+    static List<Path> findInstances(Path source) throws IOException {
+        final List<Path> instances = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (isInstance(dir)) {
+                        instances.add(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Collections.sort(instances);
+        }
+        else {
+            Path base = source.toAbsolutePath().getParent();
+            for (String line : Files.readAllLines(source, Charset.forName("UTF-8"))) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                instances.add(base.resolve(line).normalize());
+            }
+        }
+        return instances;
+    }
+
+    static boolean isInstance(Path dir) {
+        for (String name : INSTANCE_FILES) {
+            if (!Files.isRegularFile(dir.resolve(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs every instance and writes the per-job placements and the summary
+     *
+     * @param instances the instance folders
+     * @param root the directory or manifest the instances were found from; output paths are relative to it
+     * @param out the output directory
+     * @param threads number of worker threads
+     * @return the finished jobs, in the order given
+     */
+    List<Job> run(List<Path> instances, Path root, Path out, int threads) throws IOException {
+        Path base = (Files.isDirectory(root) ? root : root.toAbsolutePath().getParent()).toAbsolutePath().normalize();
+        final List<Job> jobs = new ArrayList<>(instances.size());
+        for (Path instance : instances) {
+            Path relative = base.relativize(instance.toAbsolutePath().normalize());
+            if (relative.startsWith("..") || relative.toString().isEmpty()) {
+                relative = instance.toAbsolutePath().normalize().getFileName();
+            }
+            jobs.add(new Job(instance, relative, out.resolve(relative).resolve("placement.out")));
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(jobs);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        double wall = (System.nanoTime() - start) / 1e9;
+
+        Files.createDirectories(out);
+        Files.write(out.resolve("summary.out"), summarise(jobs, wall), Charset.forName("UTF-8"));
+        return jobs;
+    }
+
+    static List<String> summarise(List<Job> jobs, double wallSeconds) {
+        List<String> lines = new ArrayList<>(jobs.size() + 2);
+        lines.add("instance\tstatus\tseconds\tevaluations\tevals/s\tObj");
+        long evaluations = 0;
+        int ok = 0;
+        for (Job job : jobs) {
+            evaluations += job.evaluations;
+            if (job.error == null) {
+                ok++;
+            }
+            lines.add(job.relative + "\t" +
+                    (job.error == null ? (job.best == null ? "no solution" : "ok") : "failed: " + job.error) + "\t" +
+                    String.format("%.3f", job.seconds) + "\t" +
+                    job.evaluations + "\t" +
+                    String.format("%.0f", (job.seconds > 0 ? job.evaluations / job.seconds : 0.0)) + "\t" +
+                    (job.best == null ? "-" : String.valueOf(job.best.getObj())));
+        }
+        lines.add("total\t" + ok + "/" + jobs.size() + " ok\t" +
+                String.format("%.3f", wallSeconds) + "\t" +
+                evaluations + "\t" +
+                String.format("%.0f", (wallSeconds > 0 ? evaluations / wallSeconds : 0.0)) + "\t-");
+        return lines;
+    }
+
+    /**
+     * One instance; compute() never throws, failures are kept in error
+     */
+    class Job extends RecursiveAction {
+        private static final long serialVersionUID = 8391624475082153706L;
+
+        final Path instance;
+        final Path relative;
+        final Path output;
+        Placement best;
+        long evaluations;
+        double seconds;
+        String error;
+
+        Job(Path instance, Path relative, Path output) {
+            this.instance = instance;
+            this.relative = relative;
+            this.output = output;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            DMFB_ReconfigPlacementProblem problem = null;
+            try {
+                String[] files = new String[INSTANCE_FILES.length];
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = instance.resolve(INSTANCE_FILES[i]).toString();
+                }
+                Instance instance = (instanceCache != null ? instanceCache.load(files) : new Parser(files));
+
+                problem = Main.newProblem(instance, archiveCapacity, biObjective);
+                if (deltaLimit >= 0) {
+                    problem.setDeltaLimit(deltaLimit);
+                }
+                problem.setRepair(repair);
+                problem.setSeeding(seeding);
+                problem.setMemetic(memeticElites, memeticMillis);
+                if (cacheCapacity > 0) {
+                    problem.setEvaluationCache(new EvaluationCache(cacheCapacity));
+                }
+                Main.optimise(problem, 1, stoppingRule, metrics, relative.toString());
+
+                best = problem.getPlacements().getBest();
+                Files.createDirectories(output.getParent());
+                if (best != null) {
+                    PlacementWriter.write(output, best, instance.getOperations(), instance.getAlpha());
+                }
+                else {
+                    PlacementWriter.writeNoSolution(output);
+                }
+            } catch (Exception e) {
+                error = String.valueOf(e);
+            } finally {
+                seconds = (System.nanoTime() - start) / 1e9;
+                evaluations = (problem == null ? 0 : problem.getNumberOfEvaluations());
+            }
+        }
+    }
+}
@@ -1,22 +1,57 @@
-import graph.Edge;
+import archive.EliteArchive;
+import cache.EvaluationCache;
+import checkpoint.Checkpointable;
+import genome.PackedGenome;
 import graph.Graph;
+import memetic.LocalSearch;
 import misc.Architecture;
-import misc.Location;
+import misc.FeasibilityRepair;
+import misc.InterferenceChecker;
+import misc.OccupancyGrid;
+import misc.Phenotype;
 import misc.Placement;
+import metrics.EvaluationStatistics;
 import operation.*;
+import org.moeaframework.core.PRNG;
 import org.moeaframework.core.Solution;
-import org.moeaframework.core.variable.BinaryVariable;
 import org.moeaframework.problem.AbstractProblem;
+import seeding.ConstructiveSeeder;
+import seeding.Seedable;
+import seeding.SeededAlgorithms;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Reconfigurable Placement for microfluidic biochips problem (DMFB_RPP)
  * By: Tyson Loveless
+ *
+ * Thread safety: everything built in the constructor is read-only afterwards, evaluation scratch space is per-thread
+ *  (see Workspace), and the elite archive is a concurrent structure, so evaluate() may be called concurrently, e.g.
+ *  through Executor.distributeOn().
  */
-public class DMFB_ReconfigPlacementProblem extends AbstractProblem {
+public class DMFB_ReconfigPlacementProblem extends AbstractProblem implements EvaluationStatistics, Seedable, Checkpointable {
 
-    private final ArrayList<Integer> mixPositions;
+    //mix latency indexed by mix size code: 2x2, 2x3, 1x4, 2x4
+    private static final int[] MIX_LATENCY = {10, 6, 5, 3};
+    //mix footprint (height, width) indexed by mix size code
+    private static final int[] MIX_HEIGHT = {2, 2, 1, 2};
+    private static final int[] MIX_WIDTH = {2, 3, 4, 4};
+
+    //number of distinct best placements kept unless told otherwise
+    static final int DEFAULT_ARCHIVE_CAPACITY = 100;
+
+    //fraction of the initial population seeded when starting from a previous placement and seeding is not set
+    static final double PREVIOUS_SEEDING = 0.5;
+
+    //solution attribute holding the EvaluationState of the last evaluation; copies made by the packed genome
+    //  operators carry it over, so a child can be evaluated as a delta against its parent
+    static final String STATE = "dmfb.state";
+
+    private final int[] mixPositions;
     private final Architecture architecture;
     private final List<Operation> operations;
     private final Graph interferenceGraph;
@@ -24,7 +59,52 @@ public class DMFB_ReconfigPlacementProblem extends AbstractProblem {
     private final double alpha;
     private final int x_bits;
     private final int y_bits;
-    private HashSet<Placement> placements;
+    private final int bitsPerOperation;
+    private final EliteArchive placements;
+    private final AtomicLong evaluations;
+    //time spent decoding and checking constraints, only measured when timing is on
+    private final AtomicLong decodeNanos;
+    private final AtomicLong constraintNanos;
+    //optional, set before the run starts
+    private volatile EvaluationCache cache;
+    private volatile int deltaLimit;
+    private volatile boolean timing;
+    private volatile FeasibilityRepair.Mode repairMode = FeasibilityRepair.Mode.OFF;
+    private volatile double seeding;
+    private volatile int memeticElites;
+    private volatile int memeticMillis;
+    //the previous placement encoded, and per operation whether it places it; null when starting afresh
+    private volatile PackedGenome previous;
+    private volatile boolean[] known;
+    //per genome word, the bits of the pinned operations' fields and the values they are held at; null for none
+    private volatile long[] pinMask;
+    private volatile long[] pinBits;
+
+    //flattened, read-only views of the instance used on the evaluation hot path
+    private final int[] types;
+    private final int[] baseHeight;
+    private final int[] baseWidth;
+    private final int[] fixedX;
+    private final int[] fixedY;
+    //Architecture capability a sense, detect, or heat operation must be placed on, 0 for other operations
+    private final int[] capability;
+    private final double[] importance;
+    private final InterferenceChecker interferenceChecker;
+    //rebuilt by setPrevious() so that they leave pinned operations alone
+    private volatile FeasibilityRepair repair;
+    private volatile ConstructiveSeeder seeder;
+    private volatile LocalSearch localSearch;
+    //index of each operation's boundary / capability constraint, -1 if it has none
+    private final int[] boundaryConstraint;
+    private final int[] capabilityConstraint;
+
+    //decode and constraint buffers, reused by every evaluation on the same thread
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace(operations.size(), numberOfObjectives, numberOfConstraints, architecture);
+        }
+    };
 
     /**
      * Constructs a DMFB_RPP problem instance
@@ -39,49 +119,552 @@ public class DMFB_ReconfigPlacementProblem extends AbstractProblem {
      * @param num_io number of input and output operations
      */
     DMFB_ReconfigPlacementProblem(Architecture arch, List<Operation> ops, Graph IG, Graph CG, double a, int num_special_ops, int num_io) {
-        super(ops.size(), 1, IG.getEdges().size()+num_special_ops+(ops.size()-num_io));
+        this(arch, ops, IG, CG, a, num_special_ops, num_io, DEFAULT_ARCHIVE_CAPACITY);
+    }
+
+    /**
+     * Constructs a DMFB_RPP problem instance with an archive of the given capacity
+     *
+     * @param archive_capacity maximum number of distinct feasible placements kept in the elite archive
+     */
+    DMFB_ReconfigPlacementProblem(Architecture arch, List<Operation> ops, Graph IG, Graph CG, double a, int num_special_ops, int num_io,
+                                  int archive_capacity) {
+        this(arch, ops, IG, CG, a, num_special_ops, num_io, archive_capacity, false);
+    }
+
+    /**
+     * Constructs a DMFB_RPP problem instance
+     *
+     * @param archive_capacity maximum number of distinct feasible placements kept in the elite archive
+     * @param bi_objective if true, D_comm and -T_mix are exposed as two separate objectives, so one run returns the
+     *                     whole trade-off front; alpha is then only used to rank placements in the archive
+     */
+    DMFB_ReconfigPlacementProblem(Architecture arch, List<Operation> ops, Graph IG, Graph CG, double a, int num_special_ops, int num_io,
+                                  int archive_capacity, boolean bi_objective) {
+        super(1, (bi_objective ? 2 : 1), IG.getNumberOfEdges()+num_special_ops+(ops.size()-num_io));
         this.architecture = arch;
-        this.operations = ops;
+        this.operations = Collections.unmodifiableList(new ArrayList<>(ops));
         this.interferenceGraph = IG;
         this.communicationGraph = CG;
         this.alpha = a;
-        this.placements = new HashSet<>();
+        this.placements = new EliteArchive(archive_capacity);
+        this.evaluations = new AtomicLong();
+        this.decodeNanos = new AtomicLong();
+        this.constraintNanos = new AtomicLong();
+
+        //per-operation data, indexed by ID-1
+        int n = operations.size();
+        this.types = new int[n];
+        this.baseHeight = new int[n];
+        this.baseWidth = new int[n];
+        this.fixedX = new int[n];
+        this.fixedY = new int[n];
+        this.importance = new double[n];
+        this.capability = new int[n];
+        int num_mix = 0;
+        for (Operation op : operations) {
+            int i = op.getID()-1;
+            types[i] = op.getType();
+            baseHeight[i] = op.getSize().getHeight();
+            baseWidth[i] = op.getSize().getWidth();
+            if (op instanceof AbstractOperation && ((AbstractOperation) op).getPlacement() != null) {
+                fixedX[i] = ((AbstractOperation) op).getPlacement().getX();
+                fixedY[i] = ((AbstractOperation) op).getPlacement().getY();
+            }
+            if (op.getType() == 3) {
+                importance[i] = ((Mix) op).getImportance();
+                num_mix++;
+            }
+            else if (op.getType() == 7) {
+                capability[i] = Architecture.SENSOR;
+            }
+            else if (op.getType() == 8) {
+                capability[i] = Architecture.DETECTOR;
+            }
+            else if (op.getType() == 9) {
+                capability[i] = Architecture.HEATER;
+            }
+        }
 
         //store positions of mix ops
-        this.mixPositions = new ArrayList<>();
+        this.mixPositions = new int[num_mix];
+        int m = 0;
         for (Operation op : operations) {
             if (op.getType() == 3) {
-                mixPositions.add(op.getID()-1);
+                mixPositions[m++] = op.getID()-1;
             }
         }
+
+        //both graphs carry their own flat edge arrays and CSR adjacency, indexed by ID-1
+        this.interferenceChecker = new InterferenceChecker(IG);
+
+        //constraint layout: one per IG edge, then per operation its boundary and capability constraints
+        this.boundaryConstraint = new int[n];
+        this.capabilityConstraint = new int[n];
+        int c = IG.getNumberOfEdges();
+        for (int i = 0; i < n; i++) {
+            boundaryConstraint[i] = (types[i] != 1 && types[i] != 2 ? c++ : -1);
+            capabilityConstraint[i] = (capability[i] != 0 ? c++ : -1);
+        }
+
+        //by default, children that differ from their parent in at most 1/8 of the operations are evaluated as a delta
+        this.deltaLimit = Math.max(1, n/8);
+
         //number of bits needed to represent x pos and y pos
         this.x_bits = (int)Math.ceil((Math.log(architecture.getColumns()-2))/(Math.log(2)));
         this.y_bits = (int)Math.ceil((Math.log(architecture.getRows()-2))/(Math.log(2)));
+        this.bitsPerOperation = x_bits+y_bits+1+2;
+
+        //sense, detect, and heat operations can only select among the first 2^x_bits capable cells
+        this.repair = new FeasibilityRepair(architecture, IG, types, capability, 1 << x_bits);
+        this.seeder = new ConstructiveSeeder(architecture, CG, repair);
+        this.localSearch = new LocalSearch(architecture, CG, repair, types, capability, importance, MIX_LATENCY,
+                MIX_HEIGHT, MIX_WIDTH, 1 << x_bits);
     }
 
 
-    HashSet<Placement> getPlacements() {
+    /**
+     * Constructs a problem that shares the compiled, read-only instance data of base but weighs the objectives with
+     *  a different alpha.  The copy starts with an empty archive, no evaluation cache (cached objectives depend on
+     *  alpha), and base's delta limit, timing, repair, seeding, and local search settings and previous placement.
+     *
+     * @param base the problem to share the instance with
+     * @param a alpha for the new problem
+     */
+    private DMFB_ReconfigPlacementProblem(DMFB_ReconfigPlacementProblem base, double a) {
+        super(base.numberOfVariables, base.numberOfObjectives, base.numberOfConstraints);
+        this.architecture = base.architecture;
+        this.operations = base.operations;
+        this.interferenceGraph = base.interferenceGraph;
+        this.communicationGraph = base.communicationGraph;
+        this.alpha = a;
+        this.placements = new EliteArchive(base.placements.getCapacity());
+        this.evaluations = new AtomicLong();
+        this.decodeNanos = new AtomicLong();
+        this.constraintNanos = new AtomicLong();
+        this.timing = base.timing;
+        this.types = base.types;
+        this.baseHeight = base.baseHeight;
+        this.baseWidth = base.baseWidth;
+        this.fixedX = base.fixedX;
+        this.fixedY = base.fixedY;
+        this.importance = base.importance;
+        this.capability = base.capability;
+        this.mixPositions = base.mixPositions;
+        this.interferenceChecker = base.interferenceChecker;
+        this.repair = base.repair;
+        this.repairMode = base.repairMode;
+        this.seeder = base.seeder;
+        this.seeding = base.seeding;
+        this.localSearch = base.localSearch;
+        this.memeticElites = base.memeticElites;
+        this.memeticMillis = base.memeticMillis;
+        this.previous = base.previous;
+        this.known = base.known;
+        this.pinMask = base.pinMask;
+        this.pinBits = base.pinBits;
+        this.boundaryConstraint = base.boundaryConstraint;
+        this.capabilityConstraint = base.capabilityConstraint;
+        this.deltaLimit = base.deltaLimit;
+        this.x_bits = base.x_bits;
+        this.y_bits = base.y_bits;
+        this.bitsPerOperation = base.bitsPerOperation;
+    }
+
+    /**
+     * @return a problem over the same instance with the given alpha, see the sharing constructor above
+     */
+    DMFB_ReconfigPlacementProblem withAlpha(double a) {
+        return new DMFB_ReconfigPlacementProblem(this, a);
+    }
+
+    /**
+     * @return the archive of the best distinct feasible placements found so far
+     */
+    EliteArchive getPlacements() {
         return placements;
     }
 
+    boolean isBiObjective() {
+        return numberOfObjectives == 2;
+    }
+
+    double getAlpha() {
+        return alpha;
+    }
+
+    List<Operation> getOperations() {
+        return operations;
+    }
+
     /**
-     * Each variable is encoded as: x_bits | y_bits | orientation bit | mix_size
+     * Decodes a solution into a standalone Placement, e.g. for every member of a returned front
      *
-     * x_bits = log_2(columns-1)
-     * y_bits = log_2(rows-1)
+     * @param solution a solution of this problem
+     * @return the decoded placement with its objective values
+     */
+    Placement getPlacement(Solution solution) {
+        Phenotype sol = new Phenotype(operations.size());
+        decode((PackedGenome) solution.getVariable(0), sol);
+        return sol.toPlacement();
+    }
+
+    /**
+     * Enables (or, with null, disables) skipping evaluation of genomes whose results are already cached.  Must be
+     *  called before the run starts.
+     */
+    void setEvaluationCache(EvaluationCache cache) {
+        this.cache = cache;
+    }
+
+    EvaluationCache getEvaluationCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the largest number of changed operations for which a child is evaluated as a delta against its parent;
+     *  children with more changes, or 0 to disable delta evaluation, are evaluated in full.  Must be called before
+     *  the run starts.
+     */
+    void setDeltaLimit(int limit) {
+        this.deltaLimit = limit;
+    }
+
+    /**
+     * Sets whether decoded placements are repaired before they are evaluated, see FeasibilityRepair.  A repair can
+     *  move operations that did not change, so repaired runs always evaluate in full.  Must be called before the run
+     *  starts.
+     */
+    void setRepair(FeasibilityRepair.Mode mode) {
+        this.repairMode = mode;
+    }
+
+    FeasibilityRepair.Mode getRepair() {
+        return repairMode;
+    }
+
+    /**
+     * Sets the fraction of the initial population built by ConstructiveSeeder rather than at random, 0 for none.  Only
+     *  takes effect for algorithms created through algorithmName() and algorithmProperties().  Must be called before
+     *  the run starts.
+     */
+    void setSeeding(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("the seeded fraction must be within [0, 1], was " + fraction);
+        }
+        this.seeding = fraction;
+    }
+
+    double getSeeding() {
+        return seeding;
+    }
+
+    /**
+     * @return the name to ask MOEA's AlgorithmFactory for: NSGAII, seeded if seeding is on or there is a previous
+     *         placement to start from
+     */
+    String algorithmName() {
+        return (seeding > 0 || previous != null ? SeededAlgorithms.NSGAII : "NSGAII");
+    }
+
+    /**
+     * @return the properties to create algorithmName() with
+     */
+    Properties algorithmProperties() {
+        Properties properties = new Properties();
+        if (seeding > 0 || previous != null) {
+            properties.setProperty("seeding.fraction", String.valueOf(seeding > 0 ? seeding : PREVIOUS_SEEDING));
+        }
+        return properties;
+    }
+
+    /**
+     * Starts the run from a previous placement, e.g. one made before the assay was edited: the seeds are built
+     *  around it (see newSeeds()), and pinned operations are held where it puts them, so only the others are searched.
+     *  Must be called before the run starts.
+     *
+     * @param placement per operation its position, and for mixes the footprint as placed, as PlacementReader gives it
+     * @param known per operation, whether placement holds a position for it; inputs and outputs are ignored, and so
+     *              are positions the genome cannot express (off the grid, or on a cell that cannot perform the
+     *              operation) or mix footprints that are no mix size
+     * @param pinned per operation, whether it stays where placement puts it; only known operations can be pinned, and
+     *               since placement.out does not record how splits and merges are turned, theirs stays free
+     * @return number of operations pinned
+     */
+    int setPrevious(Phenotype placement, boolean[] known, boolean[] pinned) {
+        int n = types.length;
+        Phenotype sol = new Phenotype(n);
+        PackedGenome genome = new PackedGenome(n, bitsPerOperation);
+        int fieldsPerWord = genome.getFieldsPerWord();
+        boolean[] usable = new boolean[n];
+        boolean[] fixed = new boolean[n];
+        long[] mask = new long[genome.getNumberOfWords()];
+        long[] bits = new long[mask.length];
+        int num_pinned = 0;
+        for (int i = 0; i < n; i++) {
+            if (!known[i] || types[i] == 1 || types[i] == 2 || !carryOver(placement, i, sol)) {
+                continue;
+            }
+            usable[i] = true;
+            genome.setField(i, encodeOperation(0, i, sol));
+            if (pinned[i]) {
+                fixed[i] = true;
+                num_pinned++;
+                long field = (1L << bitsPerOperation) - 1;
+                if (types[i] == 4 || types[i] == 5) {
+                    field &= ~(1L << (x_bits+y_bits));
+                }
+                int shift = (i % fieldsPerWord) * bitsPerOperation;
+                mask[i / fieldsPerWord] |= field << shift;
+                bits[i / fieldsPerWord] |= (genome.getField(i) & field) << shift;
+            }
+        }
+
+        this.repair = new FeasibilityRepair(architecture, interferenceGraph, types, capability, 1 << x_bits, fixed);
+        this.seeder = new ConstructiveSeeder(architecture, communicationGraph, repair);
+        this.localSearch = new LocalSearch(architecture, communicationGraph, repair, types, capability, importance,
+                MIX_LATENCY, MIX_HEIGHT, MIX_WIDTH, 1 << x_bits);
+        this.previous = genome;
+        this.known = usable;
+        this.pinMask = (num_pinned > 0 ? mask : null);
+        this.pinBits = bits;
+        return num_pinned;
+    }
+
+    /**
+     * Copies operation i of a previous placement into sol, working out a mix's size code and orientation from its
+     *  footprint
+     *
+     * @return false if the genome cannot express where or how the operation was placed
+     */
+    private boolean carryOver(Phenotype placement, int i, Phenotype sol) {
+        sol.x[i] = placement.x[i];
+        sol.y[i] = placement.y[i];
+        sol.orientation[i] = (types[i] == 4 || types[i] == 5 ? placement.orientation[i] : 0);
+        sol.sizeCode[i] = -1;
+        if (types[i] == 3) {
+            for (int c = 0; c < MIX_HEIGHT.length && sol.sizeCode[i] < 0; c++) {
+                if (MIX_HEIGHT[c] == placement.height[i] && MIX_WIDTH[c] == placement.width[i]) {
+                    sol.sizeCode[i] = c;
+                }
+                else if (MIX_WIDTH[c] == placement.height[i] && MIX_HEIGHT[c] == placement.width[i]) {
+                    sol.sizeCode[i] = c;
+                    sol.orientation[i] = 1;
+                }
+            }
+            if (sol.sizeCode[i] < 0) {
+                return false;
+            }
+        }
+        if (capability[i] != 0) {
+            //only the cells the x bits can select
+            int limit = Math.min(architecture.getCount(capability[i]), 1 << x_bits);
+            for (int selection = 0; selection < limit; selection++) {
+                if (architecture.getX(capability[i], selection) == sol.x[i] &&
+                        architecture.getY(capability[i], selection) == sol.y[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return inBoundary(sol.x[i], sol.y[i]);
+    }
+
+    /**
+     * Sets up memetic runs: after every generation, up to elites of the best feasible solutions are refined by
+     *  LocalSearch for at most millis milliseconds in all, see MemeticRefinement.  0 elites for none.  Must be called
+     *  before the run starts.
+     */
+    void setMemetic(int elites, int millis) {
+        if (elites < 0 || millis < 1) {
+            throw new IllegalArgumentException("need elites >= 0 and a positive time budget");
+        }
+        this.memeticElites = elites;
+        this.memeticMillis = millis;
+    }
+
+    int getMemeticElites() {
+        return memeticElites;
+    }
+
+    int getMemeticMillis() {
+        return memeticMillis;
+    }
+
+    /**
+     * Refines the placement of a feasible solution with LocalSearch
+     *
+     * @param solution a feasible, evaluated solution of this problem; not modified
+     * @param deadline System.nanoTime() by which to stop searching
+     * @return a new solution holding the refined placement, or null if nothing improved.  It is not evaluated yet:
+     *         the caller evaluates it through the algorithm, so that it counts towards the run's evaluations.
+     */
+    Solution refine(Solution solution, long deadline) {
+        PackedGenome genome = ((PackedGenome) solution.getVariable(0)).copy();
+        Phenotype sol = new Phenotype(operations.size());
+        decode(genome, sol);
+        if (!localSearch.refine(sol, alpha, isBiObjective(), deadline)) {
+            return null;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (!repair.isFixed(i)) {
+                genome.setField(i, encodeOperation(genome.getField(i), i, sol));
+            }
+        }
+        //a copy rather than newSolution(), so it stays a FutureSolution when the algorithm evaluates on several threads
+        Solution refined = solution.copy();
+        refined.setVariable(0, genome);
+        return refined;
+    }
+
+    /**
+     * Builds placements with ConstructiveSeeder and encodes them back into genomes.  Each starts from a random genome,
+     *  so sizes and orientations stay random and only positions are constructed.
+     *
+     * With a previous placement (see setPrevious()), every seed starts from it instead, with random fields only for
+     *  the operations it does not place.  Every other seed is left at that, the first being the previous placement
+     *  itself as far as it goes; the rest have their free operations placed anew by ConstructiveSeeder around the
+     *  pinned ones.
+     */
+    @Override
+    public List<Solution> newSeeds(int count) {
+        List<Solution> seeds = new ArrayList<>(count);
+        Phenotype sol = new Phenotype(operations.size());
+        PackedGenome previous = this.previous;
+        boolean[] known = this.known;
+        for (int k = 0; k < count; k++) {
+            Solution solution = newSolution();
+            PackedGenome genome = (PackedGenome) solution.getVariable(0);
+            genome.randomize();
+            if (previous != null) {
+                for (int i = 0; i < types.length; i++) {
+                    if (known[i]) {
+                        genome.setField(i, previous.getField(i));
+                    }
+                }
+                if (k % 2 == 0) {
+                    seeds.add(solution);
+                    continue;
+                }
+            }
+            for (int i = 0; i < types.length; i++) {
+                decodeOperation(genome.getField(i), i, sol);
+            }
+            seeder.seed(sol, PRNG.getRandom());
+            for (int i = 0; i < types.length; i++) {
+                if (!repair.isFixed(i)) {
+                    genome.setField(i, encodeOperation(genome.getField(i), i, sol));
+                }
+            }
+            seeds.add(solution);
+        }
+        return seeds;
+    }
+
+    /**
+     * Writes the instance's shape (number of operations, field width, objectives, constraints, and alpha) to check
+     *  on reading, the evaluation count, and the elite archive.  The evaluation cache is not written; a resumed run
+     *  starts with an empty one.
+     */
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        out.writeInt(operations.size());
+        out.writeInt(bitsPerOperation);
+        out.writeInt(numberOfObjectives);
+        out.writeInt(numberOfConstraints);
+        out.writeDouble(alpha);
+        out.writeLong(evaluations.get());
+        placements.write(out);
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in) throws IOException {
+        if (in.readInt() != operations.size() || in.readInt() != bitsPerOperation ||
+                in.readInt() != numberOfObjectives || in.readInt() != numberOfConstraints || in.readDouble() != alpha) {
+            throw new IOException("checkpoint was written for a different instance or alpha");
+        }
+        evaluations.set(in.readLong());
+        placements.read(in);
+    }
+
+    /**
+     * Writes the D_comm and T_mix a child of the solution would be evaluated as a delta against, if it has them
+     */
+    @Override
+    public void writeSolution(Solution solution, DataOutput out) throws IOException {
+        Object state = solution.getAttribute(STATE);
+        out.writeBoolean(state instanceof EvaluationState);
+        if (state instanceof EvaluationState) {
+            out.writeDouble(((EvaluationState) state).D_comm);
+            out.writeDouble(((EvaluationState) state).T_mix);
+        }
+    }
+
+    @Override
+    public void readSolution(Solution solution, DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            double d_comm = in.readDouble();
+            double t_mix = in.readDouble();
+            solution.setAttribute(STATE, new EvaluationState(solution, d_comm, t_mix));
+        }
+    }
+
+    /**
+     * @return the calling thread's evaluation buffers, e.g. to call decode() and getConstraints() directly
+     */
+    Workspace getWorkspace() {
+        return workspace.get();
+    }
+
+    /**
+     * Turns measuring decode and constraint-checking time on or off; off by default, as it costs two clock reads
+     *  per evaluation.  Must be called before the run starts.
+     */
+    void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * @return number of calls to evaluate() so far, across all threads
+     */
+    @Override
+    public long getNumberOfEvaluations() {
+        return evaluations.get();
+    }
+
+    /**
+     * Delta evaluations update the objective and the constraints in one pass, which is counted as constraint time.
+     */
+    @Override
+    public long getDecodeNanos() {
+        return decodeNanos.get();
+    }
+
+    @Override
+    public long getConstraintNanos() {
+        return constraintNanos.get();
+    }
+
+    @Override
+    public int getArchiveSize() {
+        return placements.size();
+    }
+
+    /**
+     * The whole placement is a single PackedGenome with one field per operation, each field encoded
+     *  (least significant bit first) as: x_bits | y_bits | orientation bit | mix_size
+     *
+     * x_bits = log_2(columns-2)
+     * y_bits = log_2(rows-2)
      * orientation = x > y if 0, y > x if 1
      * mix_size = 2x2 if 0, 2x3 if 1, 1x4 if 2, 2x4 if 3
      *
-     * @return a solution with the necessary number of variables, objectives, constraints, and bits per variable
+     * @return a solution with a single packed variable holding every operation's field
      */
     @Override
     public Solution newSolution() {
         Solution solution = new Solution(numberOfVariables, numberOfObjectives, numberOfConstraints);
-
-        for (int i = 0; i < numberOfVariables; i++) {
-            solution.setVariable(i, new BinaryVariable(x_bits+y_bits+1+2));
-        }
-
+        solution.setVariable(0, new PackedGenome(operations.size(), bitsPerOperation));
         return solution;
     }
 
@@ -102,295 +685,354 @@ public class DMFB_ReconfigPlacementProblem extends AbstractProblem {
      */
     @Override
     public void evaluate(Solution solution) {
+        evaluations.incrementAndGet();
+        Workspace ws = workspace.get();
+        Phenotype sol = ws.phenotype;
+        PackedGenome genome = (PackedGenome) solution.getVariable(0);
+
+        //pinned operations are put back where they were, whatever the variation operators did to their fields
+        long[] pinMask = this.pinMask;
+        if (pinMask != null) {
+            long[] pinBits = this.pinBits;
+            for (int w = 0; w < pinMask.length; w++) {
+                genome.setWord(w, (genome.getWord(w) & ~pinMask[w]) | pinBits[w]);
+            }
+        }
 
-        //get all variables
-        LinkedList<BinaryVariable> vars = new LinkedList<>();
-        for (int i = 0; i < numberOfVariables; i++) {
-            vars.add(((BinaryVariable)solution.getVariable(i)));
+        //a genome we have already seen skips decoding and constraint checking entirely
+        EvaluationCache cache = this.cache;
+        if (cache != null && cache.lookup(genome, ws.objectives, ws.constraints)) {
+            solution.setObjectives(ws.objectives);
+            solution.setConstraints(ws.constraints);
+            solution.removeAttribute(STATE);
+            return;
         }
 
-        //decode solution into List<Location> placement, List<OperationSize> mix_sizes, and array of orientations
-        Placement sol = decode(vars);
+        boolean timing = this.timing;
+        long started = (timing ? System.nanoTime() : 0);
 
-        //get constraints
-        double[] constraints = getConstraints(sol);
-        solution.setConstraints(constraints);
+        //a child close to its evaluated parent only re-checks what touches the operations that changed
+        Object parent = solution.getAttribute(STATE);
+        FeasibilityRepair.Mode repairMode = this.repairMode;
+        if (!(repairMode == FeasibilityRepair.Mode.OFF && parent instanceof EvaluationState &&
+                evaluateDelta((EvaluationState) parent, genome, ws))) {
+            //decode solution into the thread's phenotype buffers, repairing it first if asked to
+            decode(genome, sol, repairMode, ws);
+            if (timing) {
+                ws.decoded = System.nanoTime();
+            }
 
-        double f = sol.getObj();
+            //get constraints
+            getConstraints(sol, ws);
+        }
+        if (timing) {
+            long finished = System.nanoTime();
+            decodeNanos.addAndGet(ws.decoded - started);
+            constraintNanos.addAndGet(finished - ws.decoded);
+        }
+        solution.setConstraints(ws.constraints);
+        solution.setAttribute(STATE, new EvaluationState(solution, sol.D_comm, sol.T_mix));
 
         //update solution object function values
-        //solution.setObjective(0, f1);
-        //solution.setObjective(1, f2);
-        solution.setObjective(0, f);
+        if (numberOfObjectives == 2) {
+            ws.objectives[0] = sol.D_comm;
+            ws.objectives[1] = sol.T_mix;
+        }
+        else {
+            ws.objectives[0] = sol.Obj;
+        }
+        solution.setObjectives(ws.objectives);
+
+        if (cache != null) {
+            cache.put(genome, ws.objectives, ws.constraints);
+        }
 
-        //check if we are going to store this solution or not:
-        double best = f;
+        //offer feasible solutions to the archive, which only materialises a Placement if it keeps it
         if (!solution.violatesConstraints()) {
-            Iterator<Placement> it = placements.iterator();
-            while (it.hasNext()) {
-                Placement p = it.next();
-                if (p.getObj() > best) {
-                    it.remove();
-                }
-                else {
-                    best = p.getObj();
-                }
-            }
-            boolean already = false;
-            for (Placement p : placements) {
-                if (p.equals(sol.getPlacement())) {
-                    already = true;
-                }
-            }
-            if (!already) {
-                placements.add(sol);
-            }
+            placements.offer(sol);
         }
     }
 
 
     /**
-     * Decodes a solution into placement, mix size, orientation of operation placements, and value of obj function
+     * Decodes a solution into placement, mix size, orientation of operation placements, and value of obj function;
+     *  the placement is repaired (without touching the genome) if repair is on
      *
-     * @param vars
-     * @return
+     * @param genome the packed genome, one field per operation
+     * @param sol the phenotype buffers to decode into
      */
-    private Placement decode(LinkedList<BinaryVariable> vars) {
-        List<Location> placement = new ArrayList<>();
-        HashMap<Integer, OperationSize> mix_sizes = new HashMap<>();
-        Map<Integer, Integer> orientations = new HashMap<>();
-
-        int i = 0;
-        int x_pos, y_pos, orientation, sizecode;
-        Location<Integer, Integer> loc;
-        OperationSize<Integer, Integer> size;
-        //this is a little (hah!) ugly, but it works
-        for (BinaryVariable var : vars) {
-            // loop through each encoded variable, decode it into x-pos, y-pos, orientation, size
-            // cases fall through to populate each needed decoding value
-            switch (operations.get(i).getType()) {
-                //inputs and outputs are not included, as their placements and orientations are statically defined
-                case 3: //mix
-                    // this is used many times:
-                    // this is essentially functioning as a bit mask, but the objects provided in this package
-                    //  are weird, so it's ugly.  each bitset is evaluated in little endian form
-                    long[] longsize = var.getBitSet().get(x_bits+y_bits+1, var.getNumberOfBits()).toLongArray();
-                    sizecode = (longsize.length == 0 ? 0 : (int)longsize[0]);
-                    switch (sizecode) {
-                        case 0:
-                            size = new OperationSize<>(2, 2);
-                            break;
-                        case 1:
-                            size = new OperationSize<>(2, 3);
-                            break;
-                        case 2:
-                            size = new OperationSize<>(1, 4);
-                            break;
-                        case 3:
-                            size = new OperationSize<>(2, 4);
-                            break;
-                        default:
-                            size = new OperationSize<>(2, 2);
-                            break;
-                    }
-                    mix_sizes.put(i, size);
-                case 4:
-                case 5:
-                    long[] longorien = var.getBitSet().get(x_bits+y_bits, x_bits+y_bits).toLongArray();
-                    orientation = (longorien.length == 0 ? 0 : (int)longorien[0]);
-                    orientations.put(operations.get(i).getID()-1, orientation);
-                case 6:
-                    long[] longpos = var.getBitSet().get(0, x_bits-1).toLongArray();
-                    x_pos = (longpos.length == 0 ? 0 : (int) longpos[0]);
-                    longpos = var.getBitSet().get(x_bits, y_bits+x_bits-1).toLongArray();
-                    y_pos = (longpos.length == 0 ? 0 : (int) longpos[0]);
-                    x_pos = x_pos % architecture.getColumns() + 2;
-                    y_pos = y_pos % architecture.getRows() + 2;
-                    orientations.put(operations.get(i).getID()-1, 0);
-                    break;
-                case 7:
-                case 8:
-                case 9:
-                    longpos = var.getBitSet().get(0, x_bits-1).toLongArray();
-                    x_pos = (longpos.length == 0 ? 0 : (int) longpos[0]);
-                    longpos = var.getBitSet().get(x_bits, y_bits+x_bits-1).toLongArray();
-                    y_pos = (longpos.length == 0 ? 0 : (int) longpos[0]);
-
-                    int selection;
-                    switch (operations.get(i).getType()) {
-                        case 7:
-                            selection = x_pos % architecture.getSensors().size();
-                            x_pos = architecture.getSensors().get(selection).getX();
-                            y_pos = architecture.getSensors().get(selection).getY();
-                            break;
-                        case 8:
-                            selection = x_pos % architecture.getDetectors().size();
-                            x_pos = architecture.getDetectors().get(selection).getX();
-                            y_pos = architecture.getDetectors().get(selection).getY();
-                            break;
-                        case 9:
-                            selection = x_pos % architecture.getHeaters().size();
-                            x_pos = architecture.getHeaters().get(selection).getX();
-                            y_pos = architecture.getHeaters().get(selection).getY();
-                            break;
-                    }
-                    orientations.put(operations.get(i).getID()-1, 0);
-                    break;
-                default: //input or output (cases 1 and 2)
-                    if (operations.get(i) instanceof Input) {
-                        x_pos = ((Input) operations.get(i)).getPlacement().getX();
-                        y_pos = ((Input) operations.get(i)).getPlacement().getY();
-                    }
-                    else {
-                        x_pos = ((Output) operations.get(i)).getPlacement().getX();
-                        y_pos = ((Output) operations.get(i)).getPlacement().getY();
-                    }
-                    orientations.put(operations.get(i).getID()-1, 0);
-                    break;
+    void decode(PackedGenome genome, Phenotype sol) {
+        FeasibilityRepair.Mode mode = repairMode;
+        decode(genome, sol, (mode == FeasibilityRepair.Mode.OFF ? mode : FeasibilityRepair.Mode.BALDWINIAN),
+                workspace.get());
+    }
+
+    /**
+     * @param mode whether to repair the placement, and if so whether to write the repaired positions back into genome
+     * @param ws this thread's workspace, used as scratch space by the repair
+     */
+    private void decode(PackedGenome genome, Phenotype sol, FeasibilityRepair.Mode mode, Workspace ws) {
+        for (int i = 0; i < types.length; i++) {
+            decodeOperation(genome.getField(i), i, sol);
+        }
+
+        if (mode != FeasibilityRepair.Mode.OFF && repair.repair(sol, ws.grid, ws.settled, ws.moved) > 0 &&
+                mode == FeasibilityRepair.Mode.LAMARCKIAN) {
+            for (int i = 0; i < types.length; i++) {
+                if (ws.moved[i]) {
+                    genome.setField(i, encodeOperation(genome.getField(i), i, sol));
+                }
             }
-            loc = new Location<>(x_pos, y_pos);
-            placement.add(loc);
-            i++;
         }
 
-        double f1 = D_comm(placement);
-        double f2 = -T_mix(placement, mix_sizes);
+        sol.D_comm = D_comm(sol);
+        sol.T_mix = -T_mix(sol);
 
-        double f = alpha*f1 + (1-alpha)*f2;
+        sol.Obj = alpha*sol.D_comm + (1-alpha)*sol.T_mix;
+    }
 
-        return new Placement(placement, mix_sizes, orientations, f1, f2, f);
+    /**
+     * Decodes the field of a single operation into the phenotype buffers
+     *
+     * @param field the operation's field of the genome
+     * @param i the operation's index (ID-1)
+     * @param sol the phenotype buffers to decode into
+     */
+    private void decodeOperation(long field, int i, Phenotype sol) {
+        // each field is little endian: x | y | orientation | size, extracted with shift and mask
+        int x_pos = (int) (field & ((1L << x_bits) - 1));
+        int y_pos = (int) ((field >>> x_bits) & ((1L << y_bits) - 1));
+        int orientation = (int) ((field >>> (x_bits+y_bits)) & 1);
+        int sizecode = (int) ((field >>> (x_bits+y_bits+1)) & 3);
+        int height = baseHeight[i];
+        int width = baseWidth[i];
+        sol.sizeCode[i] = -1;
+        switch (types[i]) {
+            //inputs and outputs are not included, as their placements and orientations are statically defined
+            case 3: //mix
+                height = MIX_HEIGHT[sizecode];
+                width = MIX_WIDTH[sizecode];
+                sol.sizeCode[i] = sizecode;
+            case 4:
+            case 5:
+                x_pos = x_pos % architecture.getColumns() + 2;
+                y_pos = y_pos % architecture.getRows() + 2;
+                break;
+            case 6:
+                x_pos = x_pos % architecture.getColumns() + 2;
+                y_pos = y_pos % architecture.getRows() + 2;
+                orientation = 0;
+                break;
+            case 7:
+            case 8:
+            case 9:
+                //x bits select one of the cells able to sense, detect, or heat
+                int selection = x_pos % architecture.getCount(capability[i]);
+                x_pos = architecture.getX(capability[i], selection);
+                y_pos = architecture.getY(capability[i], selection);
+                orientation = 0;
+                break;
+            default: //input or output (cases 1 and 2)
+                x_pos = fixedX[i];
+                y_pos = fixedY[i];
+                orientation = 0;
+                break;
+        }
+        sol.x[i] = x_pos;
+        sol.y[i] = y_pos;
+        sol.orientation[i] = orientation;
+        sol.height[i] = (orientation == 0 ? height : width);
+        sol.width[i] = (orientation == 0 ? width : height);
     }
 
     /**
-     *  for each edge = (u, v) in interference graph, constraint on overlapping placement of u with v
-     *  constraint on placement for each operation:
-     *  if standard op, must be within (2, m-1) x (2, n-1) boundary box
-     *  if special op (sense, detect, heat), must be on a correct cell
-     * @param sol
-     * @return
+     * The inverse of decodeOperation: rewrites a field so that it decodes to the operation's current location,
+     *  orientation, and mix size in sol, keeping the bits decodeOperation ignores
+     *
+     * @param field the operation's field of the genome
+     * @param i the operation's index (ID-1), a mix, split, merge, store, sense, detect, or heat
+     * @param sol the repaired, seeded, or refined phenotype
+     * @return the new field
      */
-    private double[] getConstraints(Placement sol) {
-        int i = 0;
-        List<Location> placement = sol.getPlacement();
-        Map<Integer, Integer> orientations = sol.getOrientations();
-        HashSet<Location> areaU, areaV;
-        int height, width;
-        double constraint = 0.0;
-        double[] constraints = new double[numberOfConstraints];
-        //ArrayList<Double> constraints = new ArrayList<>();
-        for (Edge<Operation, Operation> e : interferenceGraph.getEdges()) {
-            areaU = new HashSet<>();
-            if (orientations.get(e.getU().getID()-1) == 0) {
-                height = e.getU().getSize().getHeight();
-                width = e.getU().getSize().getWidth();
-            }
-            else { //rotated
-                height = e.getU().getSize().getWidth();
-                width = e.getU().getSize().getHeight();
-            }
-            for (int j = 0; j < width; j++) {
-                for (int k = 0; k < height; k++) {
-                    areaU.add(new Location<>(((Integer)placement.get(e.getU().getID()-1).getX())+j,
-                            ((Integer)placement.get(e.getU().getID()-1).getY())+k));
-                }
-            }
-            areaV = new HashSet<>();
-            if (orientations.get(e.getV().getID()-1) == 0) {
-                height = e.getV().getSize().getHeight();
-                width = e.getV().getSize().getWidth();
+    private long encodeOperation(long field, int i, Phenotype sol) {
+        long position;
+        if (capability[i] != 0) {
+            //x bits select the capable cell, y bits are unused
+            int selection = 0;
+            while (architecture.getX(capability[i], selection) != sol.x[i] ||
+                    architecture.getY(capability[i], selection) != sol.y[i]) {
+                selection++;
             }
-            else { //rotated
-                height = e.getV().getSize().getWidth();
-                width = e.getV().getSize().getHeight();
+            position = selection;
+        }
+        else {
+            position = (sol.x[i] - 2) | ((long) (sol.y[i] - 2) << x_bits);
+        }
+        field = (field & ~((1L << (x_bits+y_bits)) - 1)) | position;
+        if (types[i] == 3 || types[i] == 4 || types[i] == 5) {
+            field = (field & ~(1L << (x_bits+y_bits))) | ((long) sol.orientation[i] << (x_bits+y_bits));
+        }
+        if (types[i] == 3) {
+            field = (field & ~(3L << (x_bits+y_bits+1))) | ((long) sol.sizeCode[i] << (x_bits+y_bits+1));
+        }
+        return field;
+    }
+
+    /**
+     * Evaluates a child as a delta against its evaluated parent: only the comm edges, IG edges, and boundary and
+     *  capability constraints that touch an operation whose field changed are recomputed, starting from the parent's
+     *  constraints.  These are read from the parent itself rather than from the child's copies of them: when
+     *  evaluating on several threads the child is a FutureSolution, and reading its constraints would wait for this
+     *  very evaluation.
+     *
+     * @param parent the parent's evaluation state
+     * @param genome the child's genome
+     * @param ws this thread's workspace; on success holds the child's phenotype and constraints
+     * @return false, leaving the workspace undefined, if too many operations changed for a delta to pay off
+     */
+    private boolean evaluateDelta(EvaluationState parent, PackedGenome genome, Workspace ws) {
+        PackedGenome previous = (PackedGenome) parent.solution.getVariable(0);
+        int limit = deltaLimit;
+        if (limit <= 0 || previous.getNumberOfFields() != genome.getNumberOfFields()) {
+            return false;
+        }
+
+        //find the operations whose field changed, skipping whole words that are equal
+        int[] changed = ws.changed;
+        int num_changed = 0;
+        int fieldsPerWord = genome.getFieldsPerWord();
+        for (int w = 0; w < genome.getNumberOfWords(); w++) {
+            if (genome.getWord(w) == previous.getWord(w)) {
+                continue;
             }
-            for (int j = 0; j < width; j++) {
-                for (int k = 0; k < height; k++) {
-                    areaV.add(new Location<>(((Integer)placement.get(e.getV().getID()-1).getX())+j,
-                            ((Integer)placement.get(e.getV().getID()-1).getY())+k));
+            int last = Math.min(types.length, (w+1)*fieldsPerWord);
+            for (int i = w*fieldsPerWord; i < last; i++) {
+                if (!genome.fieldEquals(previous, i)) {
+                    if (num_changed == limit) {
+                        return false;
+                    }
+                    changed[num_changed++] = i;
                 }
             }
+        }
 
-            boolean pass = true;
-            for (Location uspace : areaU) {
-                if (areaV.contains(uspace)) {
-                    pass = false;
-                }
-            }
-            constraint = (pass ? 0 : -1);
+        Phenotype sol = ws.phenotype;
+        Phenotype old = ws.previous;
+        boolean[] isChanged = ws.isChanged;
+        //the phenotype buffer holds whatever was decoded last on this thread, so decode every field of the child
+        //  (cheap, no edges involved) and the parent only where it differs
+        for (int i = 0; i < types.length; i++) {
+            decodeOperation(genome.getField(i), i, sol);
+        }
+        for (int k = 0; k < num_changed; k++) {
+            int i = changed[k];
+            decodeOperation(previous.getField(i), i, old);
+            isChanged[i] = true;
+        }
+        if (timing) {
+            ws.decoded = System.nanoTime();
+        }
 
-            constraints[i++] = constraint;
-            //solution.setConstraint(i++, constraint);
+        double[] constraints = ws.constraints;
+        for (int c = 0; c < constraints.length; c++) {
+            constraints[c] = parent.solution.getConstraint(c);
         }
 
-        // get constraints on locations for sense, detect, and heat ops
-        boolean changed = false;
-        for (Operation op : operations) {
-            if (op.getType() != 1 && op.getType() != 2) {
-                constraint = (inBoundary(placement.get(op.getID()-1)) ? 0 : -1);
-                constraints[i++] = constraint;
-                //solution.setConstraint(i++, constraint);
-            }
-            if (op.getType() == 7) { //sense
-                constraint = (architecture.getSensors().contains(placement.get(op.getID()-1)) ? 0 : -1);
-                changed = true;
+        double d_comm = parent.D_comm;
+        for (int k = 0; k < num_changed; k++) {
+            int i = changed[k];
+            for (int a = communicationGraph.getOffset(i); a < communicationGraph.getOffset(i+1); a++) {
+                //an edge between two changed operations is handled once, from its lower endpoint
+                int other = communicationGraph.getNeighbour(a);
+                if (isChanged[other] && other < i) {
+                    continue;
+                }
+                int e = communicationGraph.getAdjacentEdge(a);
+                int u = communicationGraph.getEdgeU(e);
+                int v = communicationGraph.getEdgeV(e);
+                int ux = (isChanged[u] ? old.x[u] : sol.x[u]);
+                int uy = (isChanged[u] ? old.y[u] : sol.y[u]);
+                int vx = (isChanged[v] ? old.x[v] : sol.x[v]);
+                int vy = (isChanged[v] ? old.y[v] : sol.y[v]);
+                int cost = communicationGraph.getEdgeCost(e);
+                d_comm -= cost*(Math.abs(ux-vx) + Math.abs(uy-vy));
+                d_comm += cost*(Math.abs(sol.x[u]-sol.x[v]) + Math.abs(sol.y[u]-sol.y[v]));
             }
-            else if (op.getType() == 8) { //detect
-                constraint = (architecture.getDetectors().contains(placement.get(op.getID()-1)) ? 0 : -1);
-                changed = true;
+            for (int a = interferenceGraph.getOffset(i); a < interferenceGraph.getOffset(i+1); a++) {
+                int e = interferenceGraph.getAdjacentEdge(a);
+                constraints[e] = (InterferenceChecker.overlaps(sol, i, interferenceGraph.getNeighbour(a)) ? -1 : 0);
             }
-            else if (op.getType() == 9) { //heat
-                constraint = (architecture.getHeaters().contains(placement.get(op.getID()-1)) ? 0 : -1);
-                changed = true;
+            if (boundaryConstraint[i] >= 0) {
+                constraints[boundaryConstraint[i]] = (inBoundary(sol.x[i], sol.y[i]) ? 0 : -1);
             }
-            if (changed) {
-                constraints[i++] = constraint;
-                //solution.setConstraint(i++, constraint);
-                changed = false;
+            if (capabilityConstraint[i] >= 0) {
+                constraints[capabilityConstraint[i]] = (architecture.hasCapability(sol.x[i], sol.y[i], capability[i]) ? 0 : -1);
             }
         }
-        return constraints;
-    }
+        for (int k = 0; k < num_changed; k++) {
+            isChanged[changed[k]] = false;
+        }
 
+        sol.D_comm = d_comm;
+        sol.T_mix = -T_mix(sol);
+        sol.Obj = alpha*sol.D_comm + (1-alpha)*sol.T_mix;
+        return true;
+    }
 
     /**
-     * Checks if a given location is within the boundary.  This function may no longer be needed.
-     *
-     * @param location
-     * @return
+     *  for each edge = (u, v) in interference graph, constraint on overlapping placement of u with v
+     *  constraint on placement for each operation:
+     *  if standard op, must be within (2, m-1) x (2, n-1) boundary box
+     *  if special op (sense, detect, heat), must be on a correct cell
+     * @param sol the decoded placement
+     * @param ws this thread's workspace; receives one value per constraint in ws.constraints
      */
-    private boolean inBoundary(Location<Integer, Integer> location) {
-        int x = location.getX();
-        int y = location.getY();
+    void getConstraints(Phenotype sol, Workspace ws) {
+        double[] constraints = ws.constraints;
+        //footprints are rasterised once, then each IG edge is answered in O(1)
+        interferenceChecker.check(sol, ws.grid, ws.contested, constraints, 0);
+        int i = interferenceChecker.getNumberOfEdges();
 
-        return !(x <= 1 || x >= architecture.getColumns() || y <= 1 || y >= architecture.getRows());
+        // get constraints on locations for sense, detect, and heat ops
+        for (int op = 0; op < types.length; op++) {
+            int type = types[op];
+            if (type != 1 && type != 2) {
+                constraints[i++] = (inBoundary(sol.x[op], sol.y[op]) ? 0 : -1);
+            }
+            if (capability[op] != 0) { //sense, detect, or heat
+                constraints[i++] = (architecture.hasCapability(sol.x[op], sol.y[op], capability[op]) ? 0 : -1);
+            }
+        }
     }
 
 
     /**
-     * Computes the manhattan distance between two locations (u, v) as MD(u, v) = |u.x - v.x| + |u.y - v.y|
+     * Checks if a given location is within the boundary.  This function may no longer be needed.
      *
-     * @param u the location for operation u
-     * @param v the location for operation v
-     * @return the manhattan distance between placements for u and v
+     * @param x
+     * @param y
+     * @return
      */
-    private int ManhattanDistance(Location<Integer, Integer> u, Location<Integer, Integer> v) {
-        return Math.abs(u.getX()-v.getX()) + Math.abs(u.getY()-v.getY());
+    private boolean inBoundary(int x, int y) {
+        return !(x <= 1 || x >= architecture.getColumns() || y <= 1 || y >= architecture.getRows());
     }
 
 
     /**
      * Computes the communication costs between operations that have edges in the communication graph
      *
-     * @param placement a placement P = {P(1), P(2), ...., P(n)} for all n operations, where each P(i) is a location
+     *  manhattan distance between two locations (u, v) is MD(u, v) = |u.x - v.x| + |u.y - v.y|
+     *
+     * @param placement a placement P = {P(1), P(2), ...., P(n)} for all n operations
      * @return the sum over all communication costs for dependent operations
      */
-    private double D_comm(List<Location> placement) {
+    double D_comm(Phenotype placement) {
         double sum = 0.0;
-        Location u, v;
-        for (Edge<Operation, Operation> e : communicationGraph.getEdges()) {
-            u = placement.get(e.getU().getID()-1);
-            v = placement.get(e.getV().getID()-1);
-            sum += e.getCost()*ManhattanDistance(u, v);
+        Graph CG = communicationGraph;
+        for (int e = 0; e < CG.getNumberOfEdges(); e++) {
+            int u = CG.getEdgeU(e);
+            int v = CG.getEdgeV(e);
+            sum += CG.getEdgeCost(e)*(Math.abs(placement.x[u]-placement.x[v]) + Math.abs(placement.y[u]-placement.y[v]));
         }
         return sum;
     }
@@ -399,48 +1041,77 @@ public class DMFB_ReconfigPlacementProblem extends AbstractProblem {
     /**
      * Computes the latency for all mix operations from their specified sizes in this solution
      *
-     * @param placement not sure why this was specified
-     * @param mix_sizes the sizes for each mix operation in this solution
+     * @param placement the decoded placement, holding the size code of each mix operation
      * @return the sum of cost*latency for each mix operation
      */
-    private double T_mix(List<Location> placement, HashMap<Integer, OperationSize> mix_sizes) {
+    double T_mix(Phenotype placement) {
         double sum = 0.0;
-        int latency;
-        for (Integer i : mixPositions) {
-            latency = getLatecy(mix_sizes.get(i));
-            sum += ((Mix)operations.get(i)).getImportance() * (10 - latency);
+        for (int i : mixPositions) {
+            sum += importance[i] * (10 - MIX_LATENCY[placement.sizeCode[i]]);
         }
         return sum;
     }
 
     /**
-     * @param size the size of the mix operations
-     * @return the latency of the given mix size
+     * Combines our objectives into a single objective function --- not sure if needed as NSGAII handles multiple objectives
+     *
+     * @param placement a placement P = {P(1), P(2), ...., P(n)} for all n operations
+     * @return the combined objective functions of minimizing comm distances while maximizing latency increase
      */
-    private int getLatecy(OperationSize<Integer, Integer> size) {
-        if (size.getHeight() == 2 && size.getWidth() == 2) {
-            return 10;
-        }
-        else if (size.getHeight() == 3 || size.getWidth() == 3) {
-            return 6;
-        }
-        else if (size.getHeight() == 1 || size.getWidth() == 1) {
-            return 5;
-        }
-        else { // (2x4 or 4x2)
-            return 3;
+    private double Obj(Phenotype placement) {
+        return alpha*D_comm(placement) + (1-alpha)*T_mix(placement);
+    }
+
+    /**
+     * Per-thread evaluation state
+     */
+    static class Workspace {
+        final Phenotype phenotype;
+        //parent's decoded fields during a delta evaluation, only valid for the changed operations
+        final Phenotype previous;
+        final int[] changed;
+        final boolean[] isChanged;
+        final double[] objectives;
+        final double[] constraints;
+        final OccupancyGrid grid;
+        final boolean[] contested;
+        //repair scratch flags
+        final boolean[] settled;
+        final boolean[] moved;
+        //clock reading after decoding, when timing is on
+        long decoded;
+
+        Workspace(int num_ops, int num_objectives, int num_constraints, Architecture arch) {
+            this.phenotype = new Phenotype(num_ops);
+            this.previous = new Phenotype(num_ops);
+            this.changed = new int[num_ops];
+            this.isChanged = new boolean[num_ops];
+            this.objectives = new double[num_objectives];
+            this.constraints = new double[num_constraints];
+            this.grid = new OccupancyGrid(arch);
+            this.contested = new boolean[num_ops];
+            this.settled = new boolean[num_ops];
+            this.moved = new boolean[num_ops];
         }
     }
 
     /**
-     * Combines our objectives into a single objective function --- not sure if needed as NSGAII handles multiple objectives
-     *
-     * @param placement a placement P = {P(1), P(2), ...., P(n)} for all n operations, where each P(i) is a location
-     * @param mix_sizes the sizes for each mix operation in this solution
-     * @return the combined objective functions of minimizing comm distances while maximizing latency increase
+     * What a child needs from its parent to be evaluated as a delta: the evaluated parent itself, whose genome is not
+     *  modified after evaluation and whose constraints are read in place, and the D_comm and T_mix its objectives
+     *  were made of.  Nothing is copied, so this is the only allocation an evaluation makes.
      */
-    private double Obj(List<Location> placement, HashMap<Integer, OperationSize> mix_sizes) {
-        return alpha*D_comm(placement) + (1-alpha)*T_mix(placement, mix_sizes);
+    private static class EvaluationState implements java.io.Serializable {
+        private static final long serialVersionUID = 6154726370954713382L;
+
+        final Solution solution;
+        final double D_comm;
+        final double T_mix;
+
+        EvaluationState(Solution solution, double d_comm, double t_mix) {
+            this.solution = solution;
+            this.D_comm = d_comm;
+            this.T_mix = t_mix;
+        }
     }
 
 }
@@ -0,0 +1,161 @@
+import metrics.MetricsRecorder;
+import metrics.MetricsWriter;
+import org.moeaframework.algorithm.NSGAII;
+import org.moeaframework.core.NondominatedPopulation;
+import org.moeaframework.core.NondominatedSortingPopulation;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.spi.AlgorithmFactory;
+import termination.ConvergenceTermination;
+import termination.StoppingRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Island-model NSGA-II: several independent populations, one per thread, that periodically exchange their best
+ *  solutions
+ *
+ * Every island evolves its own NSGAII over the same (thread-safe) problem, so all islands feed one elite archive.
+ *  Every interval generations an island sends copies of its best migrants solutions to its neighbours -- the next
+ *  island for a ring, every other island when fully connected -- and takes in whatever has arrived for it.  Mailboxes
+ *  are lock-free queues, so islands never wait for each other.  Migrants join the population and the usual
+ *  nondominated sorting truncation decides which ones survive.  Each island stops on its own under the stopping rule,
+ *  with an equal share of its evaluation cap, and the final fronts of all islands are merged.
+ */
+class IslandModel {
+
+    enum Topology {
+        RING, ALL
+    }
+
+    private final DMFB_ReconfigPlacementProblem problem;
+    private final int islands;
+    private final Topology topology;
+    private final int interval;
+    private final int migrants;
+
+    /**
+     * @param problem the problem every island optimises
+     * @param islands number of islands, each on its own thread
+     * @param topology where migrants are sent
+     * @param interval number of generations between migrations
+     * @param migrants number of solutions an island sends to each neighbour per migration
+     */
+    IslandModel(DMFB_ReconfigPlacementProblem problem, int islands, Topology topology, int interval, int migrants) {
+        if (islands < 1 || interval < 1 || migrants < 0) {
+            throw new IllegalArgumentException("need at least one island, a positive interval, and migrants >= 0");
+        }
+        this.problem = problem;
+        this.islands = islands;
+        this.topology = topology;
+        this.interval = interval;
+        this.migrants = migrants;
+    }
+
+    /**
+     * @param stoppingRule when the islands stop; its evaluation cap is shared by all islands
+     * @param metrics where islands stream their per-generation metrics, or null
+     * @return the merged nondominated front of all islands
+     */
+    NondominatedPopulation run(StoppingRule stoppingRule, final MetricsWriter metrics)
+            throws InterruptedException, ExecutionException {
+        if (metrics != null) {
+            problem.setTiming(true);
+        }
+        final List<Queue<Solution>> mailboxes = new ArrayList<>(islands);
+        for (int i = 0; i < islands; i++) {
+            mailboxes.add(new ConcurrentLinkedQueue<Solution>());
+        }
+        final StoppingRule share = stoppingRule.split(islands);
+
+        ExecutorService pool = Executors.newFixedThreadPool(islands);
+        try {
+            List<Future<NondominatedPopulation>> futures = new ArrayList<>(islands);
+            for (int i = 0; i < islands; i++) {
+                final int island = i;
+                futures.add(pool.submit(new Callable<NondominatedPopulation>() {
+                    @Override
+                    public NondominatedPopulation call() {
+                        MetricsRecorder recorder = (metrics == null ? null :
+                                new MetricsRecorder(metrics, problem, "island-" + island));
+                        //every island already has a thread of its own, so elites are refined on it
+                        MemeticRefinement memetic = (problem.getMemeticElites() > 0 ?
+                                new MemeticRefinement(problem, 1) : null);
+                        return evolve(island, mailboxes, share.newCondition(), recorder, memetic);
+                    }
+                }));
+            }
+
+            NondominatedPopulation result = new NondominatedPopulation();
+            for (Future<NondominatedPopulation> future : futures) {
+                result.addAll(future.get());
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private NondominatedPopulation evolve(int island, List<Queue<Solution>> mailboxes, ConvergenceTermination termination,
+                                          MetricsRecorder recorder, MemeticRefinement memetic) {
+        NSGAII algorithm = (NSGAII) AlgorithmFactory.getInstance().getAlgorithm(problem.algorithmName(),
+                problem.algorithmProperties(), problem);
+        termination.initialize(algorithm);
+        if (recorder != null) {
+            recorder.initialize(algorithm);
+        }
+        if (memetic != null) {
+            memetic.initialize(algorithm);
+        }
+        int generation = 0;
+        while (!termination.shouldTerminate(algorithm)) {
+            if (recorder != null) {
+                recorder.shouldTerminate(algorithm);
+            }
+            if (memetic != null) {
+                memetic.shouldTerminate(algorithm);
+            }
+            algorithm.step();
+            generation++;
+            if (islands > 1 && generation % interval == 0) {
+                migrate(island, algorithm.getPopulation(), mailboxes);
+            }
+        }
+        return algorithm.getResult();
+    }
+
+    /**
+     * Sends this island's best solutions to its neighbours and takes in the ones waiting for it
+     */
+    private void migrate(int island, NondominatedSortingPopulation population, List<Queue<Solution>> mailboxes) {
+        //NSGAII leaves the population sorted by rank and crowding distance, so the best come first
+        int count = Math.min(migrants, population.size());
+        for (int target = 0; target < islands; target++) {
+            if (target == island || (topology == Topology.RING && target != (island + 1) % islands)) {
+                continue;
+            }
+            Queue<Solution> mailbox = mailboxes.get(target);
+            for (int i = 0; i < count; i++) {
+                mailbox.add(population.get(i).deepCopy());
+            }
+        }
+
+        int size = population.size();
+        Solution immigrant;
+        boolean arrived = false;
+        while ((immigrant = mailboxes.get(island).poll()) != null) {
+            population.add(immigrant);
+            arrived = true;
+        }
+        if (arrived) {
+            population.truncate(size);
+        }
+    }
+}
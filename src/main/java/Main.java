@@ -1,21 +1,109 @@
+import cache.EvaluationCache;
+import checkpoint.Checkpoint;
+import checkpoint.Checkpointer;
+import incremental.InstanceDiff;
+import misc.FeasibilityRepair;
+import misc.Instance;
+import misc.InstanceCache;
+import misc.Options;
 import misc.Parser;
+import misc.Phenotype;
 import misc.Placement;
-import operation.Mix;
+import misc.PlacementReader;
+import misc.PlacementWriter;
 import operation.Operation;
-import operation.OperationSize;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.moeaframework.Executor;
+import metrics.MetricsRecorder;
+import metrics.MetricsWriter;
 import org.moeaframework.core.*;
+import org.moeaframework.core.spi.AlgorithmFactory;
+import seeding.SeedableDistributedProblem;
+import seeding.SeededAlgorithms;
+import termination.Cancellation;
+import termination.ConvergenceTermination;
+import termination.StoppingRule;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Created by Tyson on 2017/12/04
+ *
+ * usage: Main [--threads=N|all] [--archive=N] [--cache=N] [--delta=N] [--bi-objective] [--sweep=A,B,..|FROM:TO:STEP]
+ *             [--repair[=lamarckian|baldwinian]] [--seeding[=FRACTION]] [--memetic[=K] [--memetic-budget=MS]]
+ *             [--islands=N [--topology=ring|all] [--migration-interval=G] [--migrants=K]]
+ *             [--window=G] [--tolerance=T] [--max-evaluations=N] [--max-time=SECONDS] [--metrics=FILE]
+ *             [--checkpoint=FILE [--checkpoint-interval=SECONDS] [--resume]] [--instance-cache[=DIR]]
+ *             [--incremental[=PLACEMENT] --previous=DIR]
+ *             arch.in ops.in graphs.in alpha.in
+ *        Main [options] --batch=DIR|MANIFEST [--out=DIR]
+ *        Main [options] --serve[=PORT] [--queue=N] [--warm-instances=N] [--warmup=EVALUATIONS]
+ *
+ *   --threads  number of threads evaluating solutions in parallel (default 1)
+ *   --archive  number of distinct best placements kept while searching (default 100)
+ *   --cache    cache the results of up to N distinct genomes and skip re-evaluating them (default off)
+ *   --delta    evaluate children with at most N changed operations incrementally against their parent
+ *              (default 1/8 of the operations, 0 to always evaluate in full)
+ *   --repair   move overlapping or out-of-bounds operations to the nearest free legal cell before evaluating;
+ *              lamarckian (the default) also writes the repaired positions back into the genome, baldwinian only
+ *              evaluates the repaired placement.  Repaired runs always evaluate in full, ignoring --delta
+ *   --seeding  build FRACTION (default 0.25) of the initial population by walking the communication graph out from
+ *              the inputs and outputs, placing each operation next to the neighbours already placed
+ *   --memetic  after every generation, refine the best K (default 4) feasible solutions with a local search of
+ *              single-operation moves, swaps, and mix size and orientation changes, for at most --memetic-budget
+ *              milliseconds (default 50) per generation; up to --threads elites are refined at once
+ *   --bi-objective  optimise D_comm and T_mix as separate objectives instead of their alpha-weighted sum; every
+ *              placement on the resulting front is written to placement_<k>.out (by increasing D_comm) and listed
+ *              in front.out, while placement.out still holds the best placement for alpha
+ *   --sweep    run once for each alpha in a list (0.1,0.5,0.9) or range (0:1:0.05) instead of the one in alpha.in,
+ *              sharing the parsed instance; up to --threads runs go at once and all results go to sweep.out
+ *   --islands  evolve N NSGA-II populations on N threads instead of one, exchanging solutions every
+ *              --migration-interval generations (default 10); each island sends its best --migrants (default 2)
+ *              to the next island (--topology=ring, the default) or to every other island (--topology=all)
+ *   --window   stop once the run has made no progress for G generations (default 50, 0 to only stop at the caps);
+ *              progress is the best feasible objective, the hypervolume with --bi-objective, the feasible fraction
+ *              of the population, or before anything is feasible, the smallest constraint violation
+ *   --tolerance  smallest relative improvement that counts as progress (default 1e-4)
+ *   --max-evaluations  evaluation cap (default 1000000, 0 for none); --window=0 --max-evaluations=25000 gives the
+ *              old fixed budget
+ *   --max-time  wall-clock cap in seconds (default none)
+ *   --metrics  stream one record per generation to FILE (JSON lines if it ends in .jsonl, CSV otherwise): run,
+ *              generation, seconds, evaluations, evaluations per second, decode and constraint time (ms) in the
+ *              generation, feasible fraction, best and median feasible objective, and archive size; islands share
+ *              one problem, so their evaluation and timing columns cover all islands
+ *   --checkpoint  every --checkpoint-interval seconds (default 60), snapshot the population, the elite archive, the
+ *              random number generator, and the progress of the run into FILE, written in the background and
+ *              replaced atomically; single-population runs only
+ *   --resume   carry on from the checkpoint in FILE if there is one (otherwise start afresh), exactly as the
+ *              interrupted run would have gone on unless --max-time or --memetic make it depend on the clock
+ *   --instance-cache  keep each instance compiled to a flat binary file in DIR (default .instance-cache), named after
+ *              a hash of its four files, and memory-map it instead of parsing the files whenever they are unchanged
+ *   --incremental  re-place an edited instance starting from PLACEMENT (default placement.out), the placement made
+ *              for the instance in DIR (holding the four .in files) before the edit.  Operations are matched between
+ *              the two instances, and those whose reservoir, importance, and interference and communication edges are
+ *              unchanged keep their old positions unless a communication graph neighbour was affected; only the rest
+ *              are searched, starting from half a population (or --seeding) of seeds built from the old placement.
+ *              Unless --window is given, the window shrinks in proportion to the operations left to search (to no
+ *              fewer than 10 generations).  If the architecture changed the old placement is not used, and if alpha
+ *              changed it only seeds the run
+ *   --batch    place every instance folder (holding the four .in files) found under DIR or listed in MANIFEST,
+ *              --threads jobs at a time; each job writes <out>/<folder>/placement.out and <out>/summary.out lists
+ *              every job's status, time, evaluations per second and best objective
+ *   --out      output directory for --batch (default placements)
+ *   --serve    place instances sent over HTTP on 127.0.0.1:PORT (default 7171) until stopped, --threads jobs at a
+ *              time with up to --queue more (default 16) waiting, and the problems of the last --warm-instances
+ *              instances (default 8) kept for later jobs; see PlacementServer for the API and PlacementClient for a
+ *              client.  Before serving, the bundled aquacorePCR instance is placed for --warmup evaluations (default
+ *              10000, 0 to skip) so the evaluator is already compiled.  The other options apply to every job, which
+ *              may override alpha, the deadline, and the stopping rule
  */
 public class Main {
     //public static final Logger logger = LogManager.getLogger(Main.class);
@@ -24,48 +112,180 @@ public class Main {
 
         //logger.info("Logger starting...");
 
-        //parse input files
-        Parser parser = new Parser(args);
+        Options options = new Options(args);
 
-        //will need these later
-        List<Operation> operations = parser.getOperations();
-        double alpha = parser.getAlpha();
+        //in code rather than through META-INF/services, so it is asked before MOEA's own providers whatever the
+        //  classpath order; those reject the packed genome problem rather than pass it on
+        AlgorithmFactory.getInstance().addProvider(new SeededAlgorithms());
 
-        //get count of special operations and io ops to set up problem instance
-        int num_special_ops = 0;
-        int num_io = 0;
-        for (Operation op : operations) {
-            if (op.getType() == 1 || op.getType() == 2) {
-                num_io++;
+        //per-generation metrics are streamed while the runs go, and the file is closed however they end
+        boolean completed;
+        try (MetricsWriter metrics = (options.has("metrics") ?
+                new MetricsWriter(Paths.get(options.get("metrics", "metrics.csv")), MetricsRecorder.COLUMNS) : null)) {
+            completed = run(options, metrics);
+        }
+        if (!completed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return false if the run failed, after printing why
+     */
+    private static boolean run(Options options, MetricsWriter metrics) throws Exception {
+        int threads = options.getThreads("threads", 1);
+        int archive_capacity = options.getInt("archive", DMFB_ReconfigPlacementProblem.DEFAULT_ARCHIVE_CAPACITY);
+        int cache_capacity = options.getInt("cache", 0);
+        boolean bi_objective = options.has("bi-objective");
+        FeasibilityRepair.Mode repair = (!options.has("repair") ? FeasibilityRepair.Mode.OFF :
+                options.get("repair", "").equals("true") ? FeasibilityRepair.Mode.LAMARCKIAN :
+                FeasibilityRepair.Mode.valueOf(options.get("repair", "").toUpperCase()));
+        double seeding = (!options.has("seeding") ? 0.0 :
+                options.get("seeding", "").equals("true") ? 0.25 : options.getDouble("seeding", 0.0));
+        int memetic_elites = (!options.has("memetic") ? 0 :
+                options.get("memetic", "").equals("true") ? 4 : options.getInt("memetic", 0));
+        int memetic_budget = options.getInt("memetic-budget", 50);
+        StoppingRule stoppingRule = new StoppingRule(
+                options.getInt("window", StoppingRule.DEFAULT_WINDOW),
+                options.getDouble("tolerance", StoppingRule.DEFAULT_TOLERANCE),
+                options.getLong("max-evaluations", StoppingRule.DEFAULT_MAX_EVALUATIONS),
+                (long) (1000 * options.getDouble("max-time", 0)));
+        InstanceCache instanceCache = (!options.has("instance-cache") ? null : new InstanceCache(Paths.get(
+                options.get("instance-cache", "").equals("true") ? ".instance-cache" : options.get("instance-cache", ""))));
+        if (options.has("checkpoint") &&
+                (options.has("batch") || options.has("sweep") || options.has("serve") ||
+                        options.getInt("islands", 1) > 1)) {
+            throw new IllegalArgumentException("--checkpoint only works for a single run of a single population");
+        }
+        if (options.has("incremental") && (options.has("batch") || options.has("serve") || !options.has("previous"))) {
+            throw new IllegalArgumentException("--incremental needs --previous and a single instance");
+        }
+
+        //server mode: jobs come in over HTTP until the server is stopped
+        if (options.has("serve")) {
+            final PlacementServer server = new PlacementServer(archive_capacity, cache_capacity,
+                    (options.has("delta") ? options.getInt("delta", 0) : -1), bi_objective, repair, seeding, memetic_elites, memetic_budget, stoppingRule,
+                    metrics, instanceCache, threads, options.getInt("queue", 16), options.getInt("warm-instances", 8));
+            int warmup = options.getInt("warmup", 10000);
+            if (warmup > 0) {
+                System.out.print("Warmed up in " + String.format("%.3f", server.warmUp(warmup)) + " s\n");
             }
-            if (op.getType() >= 7) {
-                num_special_ops++;
+            int port = server.start(options.get("serve", "").equals("true") ? 7171 : options.getInt("serve", 7171));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    server.close();
+                }
+            });
+            System.out.print("Serving placements on http://127.0.0.1:" + port + "/jobs\n");
+            server.awaitClose();
+            return true;
+        }
+
+        //batch mode: every instance folder under a directory (or listed in a manifest) is its own job
+        if (options.has("batch")) {
+            Path source = Paths.get(options.get("batch", "."));
+            Path out = Paths.get(options.get("out", "placements"));
+            List<Path> instances = Batch.findInstances(source);
+            Batch batch = new Batch(archive_capacity, cache_capacity,
+                    (options.has("delta") ? options.getInt("delta", 0) : -1), bi_objective, repair, seeding, memetic_elites, memetic_budget, stoppingRule,
+                    metrics, instanceCache);
+            List<Batch.Job> jobs = batch.run(instances, source, out, threads);
+            int failed = 0;
+            for (Batch.Job job : jobs) {
+                if (job.error != null) {
+                    failed++;
+                }
             }
+            System.out.print("Placed " + (jobs.size() - failed) + " of " + jobs.size() + " instances, summary in " +
+                    out.resolve("summary.out") + "\n");
+            return true;
         }
 
+        //parse input files, or load them compiled
+        String[] files = options.getFiles().toArray(new String[0]);
+        Instance instance = (instanceCache != null ? instanceCache.load(files) : new Parser(files));
+
+        //will need these later
+        List<Operation> operations = instance.getOperations();
+        double alpha = instance.getAlpha();
+
         try {
             //set up problem instance
-            DMFB_ReconfigPlacementProblem reconfigPlacement = new DMFB_ReconfigPlacementProblem(
-                    parser.getArch(),
-                    parser.getOperations(),
-                    parser.getInterferenceGraph(),
-                    parser.getCommunicationGraph(),
-                    parser.getAlpha(),
-                    num_special_ops,
-                    num_io);
+            DMFB_ReconfigPlacementProblem reconfigPlacement = newProblem(instance, archive_capacity, bi_objective);
+
+            if (options.has("delta")) {
+                reconfigPlacement.setDeltaLimit(options.getInt("delta", 0));
+            }
+            reconfigPlacement.setRepair(repair);
+            reconfigPlacement.setSeeding(seeding);
+            reconfigPlacement.setMemetic(memetic_elites, memetic_budget);
+
+            //incremental mode: start from the placement made before the instance was edited
+            if (options.has("incremental")) {
+                double searched = startFromPrevious(reconfigPlacement, instance,
+                        Paths.get(options.get("incremental", "").equals("true") ? "placement.out" :
+                                options.get("incremental", "")),
+                        Paths.get(options.get("previous", ".")), instanceCache);
+                if (!options.has("window")) {
+                    stoppingRule = stoppingRule.scaleWindow(searched);
+                }
+            }
+
+            //sweep mode: one run per alpha over the instance parsed above, written to a single file
+            double[] sweep = options.getDoubles("sweep");
+            if (sweep != null) {
+                List<AlphaSweep.Result> results = new AlphaSweep(reconfigPlacement, cache_capacity, stoppingRule, metrics).run(sweep, threads);
+                Files.write(Paths.get("sweep.out"), AlphaSweep.format(results, operations), Charset.forName("UTF-8"));
+                System.out.print("Swept " + sweep.length + " values of alpha into sweep.out\n");
+                return true;
+            }
+
+            if (cache_capacity > 0) {
+                reconfigPlacement.setEvaluationCache(new EvaluationCache(cache_capacity));
+            }
 
-            //pass problem instance to NSGAII
-            NondominatedPopulation placement = new Executor()
-                    .withProblem(reconfigPlacement)
-                    .withAlgorithm("NSGAII")
-                    .withMaxEvaluations(25000)
-                    .run();
+            //pass problem instance to NSGAII, either as one population or as several migrating islands
+            NondominatedPopulation placement;
+            int islands = options.getInt("islands", 1);
+            if (options.has("checkpoint")) {
+                Checkpointer checkpointer = new Checkpointer(reconfigPlacement,
+                        Paths.get(options.get("checkpoint", "checkpoint.bin")),
+                        (long) (1000 * options.getDouble("checkpoint-interval", 60)));
+                try {
+                    Checkpoint resumed = (options.has("resume") ? checkpointer.resume() : null);
+                    if (resumed != null) {
+                        System.out.print("Resuming after " + resumed.getEvaluations() + " evaluations\n");
+                    }
+                    placement = optimise(reconfigPlacement, threads, stoppingRule, metrics, "main", checkpointer, null);
+                } finally {
+                    //waits for the last checkpoint to be written
+                    checkpointer.close();
+                }
+                if (checkpointer.getError() != null) {
+                    System.out.print("Could not write checkpoint: " + checkpointer.getError() + "\n");
+                }
+            }
+            else if (islands > 1) {
+                placement = new IslandModel(reconfigPlacement, islands,
+                        IslandModel.Topology.valueOf(options.get("topology", "ring").toUpperCase()),
+                        options.getInt("migration-interval", 10),
+                        options.getInt("migrants", 2)).run(stoppingRule, metrics);
+            }
+            else {
+                placement = optimise(reconfigPlacement, threads, stoppingRule, metrics, "main");
+            }
+
+            if (reconfigPlacement.getEvaluationCache() != null) {
+                System.out.print("Evaluation cache: " + reconfigPlacement.getEvaluationCache() + "\n");
+            }
 
 
 
             boolean success = true;
             //logger.info("Objective:");
-            System.out.print("Final objective value: ");
+            System.out.print("Final objective value" + (bi_objective ? "s (D_comm, T_mix): " : ": "));
+            List<Placement> front = new ArrayList<>();
             for (Solution solution : placement) {
                 if (solution.violatesConstraints()) {
                     //logger.warn("no solution found");
@@ -79,68 +299,186 @@ public class Main {
                 }
                 else {
                     //logger.info(solution.getObjective(0));
-                    System.out.print(solution.getObjective(0) + "\n");
+                    System.out.print((bi_objective ? Arrays.toString(solution.getObjectives()) :
+                            String.valueOf(solution.getObjective(0))) + "\n");
+                    front.add(reconfigPlacement.getPlacement(solution));
                 }
             }
 
             //if we have found a solution:
             if (success) {
-                HashSet<Placement> placements = reconfigPlacement.getPlacements();
-
-                //find best placement solution matching best objective function result
-                Iterator<Placement> it = placements.iterator();
-                Placement solution = null;
-                Placement p;
-                while (it.hasNext()) {
-                    p = it.next();
-                    for (Solution s : placement) {
-                        if (p.getObj() == s.getObjective(0)) {
-                            solution = p;
-                            break;
-                        }
-                    }
-                    if (solution == null) {
-                        solution = p;
-                    }
-                }
+                //best placement found, straight from the problem's elite archive
+                Placement solution = reconfigPlacement.getPlacements().getBest();
+                PlacementWriter.write(Paths.get("placement.out"), solution, operations, alpha);
 
-                //this is unnecessary, but the objects felt incomplete, so here I update the operations with their
-                //   placements, sizes, and orientations
-                OperationSize size;
-                for (Operation op : operations) {
-                    op.setPlacement((int) solution.getPlacement().get(op.getID() - 1).getX(), (int) solution.getPlacement().get(op.getID() - 1).getY());
-                    if (op.getType() == 3) {
-                        size = solution.getMix_sizes().get(op.getID() - 1);
-                        ((Mix) op).setSize((int) size.getHeight(), (int) size.getWidth());
-                    }
-                    if (op.getType() >= 3 && op.getType() <= 5) {
-                        if (solution.getOrientations().get(op.getID() - 1) == 1) {
-                            op.rotate();
+                //in bi-objective mode also write out every member of the front, ordered by D_comm
+                if (bi_objective) {
+                    Collections.sort(front, new Comparator<Placement>() {
+                        @Override
+                        public int compare(Placement a, Placement b) {
+                            return Double.compare(a.getD_comm(), b.getD_comm());
                         }
+                    });
+                    List<String> summary = new ArrayList<>();
+                    summary.add("file\tD_comm\tT_mix\tObj");
+                    for (int k = 0; k < front.size(); k++) {
+                        Placement member = front.get(k);
+                        String name = "placement_" + k + ".out";
+                        PlacementWriter.write(Paths.get(name), member, operations, alpha);
+                        summary.add(name + "\t" + member.getD_comm() + "\t" + member.getT_mix() + "\t" + member.getObj());
                     }
+                    Files.write(Paths.get("front.out"), summary, Charset.forName("UTF-8"));
                 }
-
-                //formatting output file
-                List<String> lines = new ArrayList<>();
-                lines.add(String.valueOf(solution.getObj()) + "\t" +
-                        String.valueOf(solution.getD_comm()) + "\t" +
-                        String.valueOf(solution.getT_mix()) + "\t" +
-                        String.valueOf(alpha));
-                for (Operation operation : operations) {
-                    lines.add(operation.toString());
-                }
-                Path file = Paths.get("placement.out");
-                Files.write(file, lines, Charset.forName("UTF-8"));
             }
             // otherwise (no solution found)
             else {
-                Path file = Paths.get("placement.out");
-                Files.write(file, Collections.singletonList("No solution found."), Charset.forName("UTF-8"));
+                PlacementWriter.writeNoSolution(Paths.get("placement.out"));
             }
 
         } catch (Exception e) {
             //logger.error(e.getMessage());
             System.out.print(e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets up a problem instance from a parsed or compiled instance
+     *
+     * @param instance the instance
+     * @param archive_capacity number of distinct best placements kept while searching
+     * @param bi_objective optimise D_comm and T_mix separately rather than their alpha-weighted sum
+     */
+    static DMFB_ReconfigPlacementProblem newProblem(Instance instance, int archive_capacity, boolean bi_objective) {
+        //get count of special operations and io ops to set up problem instance
+        int num_special_ops = 0;
+        int num_io = 0;
+        for (Operation op : instance.getOperations()) {
+            if (op.getType() == 1 || op.getType() == 2) {
+                num_io++;
+            }
+            if (op.getType() >= 7) {
+                num_special_ops++;
+            }
+        }
+
+        return new DMFB_ReconfigPlacementProblem(
+                instance.getArch(),
+                instance.getOperations(),
+                instance.getInterferenceGraph(),
+                instance.getCommunicationGraph(),
+                instance.getAlpha(),
+                num_special_ops,
+                num_io,
+                archive_capacity,
+                bi_objective);
+    }
+
+    /**
+     * Sets a problem up to re-place an edited instance incrementally, see InstanceDiff
+     *
+     * @param problem the problem of the edited instance
+     * @param instance the edited instance
+     * @param placement the placement made for the instance before the edit
+     * @param previous the folder holding the instance before the edit
+     * @param instanceCache where to look the previous instance up, or null to parse it
+     * @return the fraction of the operations that can move (all but inputs and outputs) that are not pinned
+     */
+    static double startFromPrevious(DMFB_ReconfigPlacementProblem problem, Instance instance, Path placement,
+                                    Path previous, InstanceCache instanceCache) throws IOException {
+        String[] files = new String[Batch.INSTANCE_FILES.length];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = previous.resolve(Batch.INSTANCE_FILES[i]).toString();
+        }
+        Instance before = (instanceCache != null ? instanceCache.load(files) : new Parser(files));
+        InstanceDiff diff = new InstanceDiff(before, instance);
+        boolean[] known = new boolean[instance.getOperations().size()];
+        Phenotype old = diff.carryOver(PlacementReader.read(placement, before.getOperations()), known);
+        int pinned = problem.setPrevious(old, known, diff.getPinned());
+        System.out.print("Incremental: " + diff.getNumberOfAffected() + " of " + known.length +
+                " operations affected by the edit, " + pinned + " pinned" +
+                (!diff.isSameArchitecture() ? " (the architecture changed, starting afresh)" :
+                        !diff.isSameAlpha() ? " (alpha changed, seeding only)" : "") + "\n\n");
+
+        int movable = 0;
+        for (Operation op : instance.getOperations()) {
+            if (op.getType() != 1 && op.getType() != 2) {
+                movable++;
+            }
+        }
+        return (movable == 0 ? 1.0 : (double) (movable - pinned) / movable);
+    }
+
+    /**
+     * Runs NSGAII on a problem instance
+     *
+     * @param problem the problem to optimise
+     * @param threads number of threads evaluating solutions
+     * @param stoppingRule when the run stops
+     * @param metrics where to stream per-generation metrics, or null
+     * @param label names the run in the metrics
+     * @return the final nondominated population
+     */
+    static NondominatedPopulation optimise(DMFB_ReconfigPlacementProblem problem, int threads, StoppingRule stoppingRule,
+                                           MetricsWriter metrics, String label) {
+        try {
+            return optimise(problem, threads, stoppingRule, metrics, label, null, null);
+        } catch (IOException e) {
+            //only restoring a checkpoint reads anything
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs NSGAII on a problem instance, checkpointing it as it goes
+     *
+     * @param checkpointer checkpoints the run, and has already restored the problem if it is resuming; null for none
+     * @param cancellation stops the run early when cancelled from another thread, or null
+     * @throws IOException if the checkpoint being resumed from cannot be restored
+     */
+    static NondominatedPopulation optimise(DMFB_ReconfigPlacementProblem problem, int threads, StoppingRule stoppingRule,
+                                           MetricsWriter metrics, String label, Checkpointer checkpointer,
+                                           Cancellation cancellation) throws IOException {
+        ConvergenceTermination condition = stoppingRule.newCondition();
+        Executor executor = new Executor()
+                .withProblem(problem)
+                .withAlgorithm(problem.algorithmName())
+                .withProperties(problem.algorithmProperties())
+                .withTerminationCondition(condition);
+        if (metrics != null) {
+            problem.setTiming(true);
+            executor.withTerminationCondition(new MetricsRecorder(metrics, problem, label));
+        }
+        MemeticRefinement memetic = null;
+        if (problem.getMemeticElites() > 0) {
+            memetic = new MemeticRefinement(problem, threads);
+            executor.withTerminationCondition(memetic);
+        }
+        ExecutorService pool = null;
+        if (threads > 1) {
+            //rather than distributeOn(), which would hide that the problem is Seedable
+            pool = Executors.newFixedThreadPool(threads);
+            executor.withProblem(new SeedableDistributedProblem(problem, pool));
+        }
+        if (cancellation != null) {
+            executor.withTerminationCondition(cancellation);
+        }
+        //last, so that it captures each generation after everything else has seen it
+        if (checkpointer != null) {
+            checkpointer.setCondition(condition);
+            executor.usingAlgorithmFactory(checkpointer.newAlgorithmFactory());
+            executor.withTerminationCondition(checkpointer);
+        }
+        try {
+            return executor.run();
+        } finally {
+            if (memetic != null) {
+                memetic.close();
+            }
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+import genome.PackedGenome;
+import metrics.GenerationListener;
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.EvolutionaryAlgorithm;
+import org.moeaframework.core.NondominatedSortingPopulation;
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Turns an NSGA-II run into a memetic one: after every generation the best feasible solutions are refined by local
+ *  search and the refined placements rejoin the population
+ *
+ * Each generation it takes the problem's number of elites from the front of the population (NSGAII leaves it
+ *  sorted by rank and crowding distance), skipping genomes it already knows to be local optima, and refines them
+ *  with DMFB_ReconfigPlacementProblem.refine(), in parallel when it has more than one thread, all under one deadline
+ *  of the problem's time budget.  Refined solutions join the population and the usual nondominated sorting
+ *  truncation decides which ones survive, as with migrants in IslandModel.
+ */
+class MemeticRefinement extends GenerationListener implements AutoCloseable {
+
+    //genomes remembered as local optima before the set is forgotten and starts over
+    private static final int MAX_OPTIMA = 10000;
+
+    private final DMFB_ReconfigPlacementProblem problem;
+    private final int elites;
+    private final long budgetNanos;
+    //null when refining on the calling thread
+    private final ExecutorService pool;
+    private final Set<PackedGenome> optima = new HashSet<>();
+    private long refined;
+
+    /**
+     * @param problem the problem being optimised, holding the number of elites and the time budget
+     * @param threads number of elites refined at once
+     */
+    MemeticRefinement(DMFB_ReconfigPlacementProblem problem, int threads) {
+        this.problem = problem;
+        this.elites = problem.getMemeticElites();
+        this.budgetNanos = problem.getMemeticMillis() * 1000000L;
+        int poolSize = Math.min(threads, elites);
+        this.pool = (poolSize > 1 ? Executors.newFixedThreadPool(poolSize) : null);
+    }
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+        optima.clear();
+        refined = 0;
+    }
+
+    @Override
+    protected void onGeneration(Algorithm algorithm) {
+        if (algorithm instanceof EvolutionaryAlgorithm) {
+            refine((EvolutionaryAlgorithm) algorithm);
+        }
+    }
+
+    /**
+     * Refines the best feasible members of an algorithm's population and adds the improved placements to it.  They
+     *  are evaluated through the algorithm, so they count towards its number of evaluations and any cap on it.
+     */
+    void refine(EvolutionaryAlgorithm algorithm) {
+        Population population = algorithm.getPopulation();
+        final List<Solution> candidates = new ArrayList<>(elites);
+        for (Solution solution : population) {
+            if (candidates.size() == elites) {
+                break;
+            }
+            if (!solution.violatesConstraints() && !optima.contains((PackedGenome) solution.getVariable(0))) {
+                candidates.add(solution);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        final long deadline = System.nanoTime() + budgetNanos;
+        List<Solution> results = new ArrayList<>(candidates.size());
+        if (pool == null || candidates.size() == 1) {
+            for (Solution candidate : candidates) {
+                results.add(problem.refine(candidate, deadline));
+            }
+        }
+        else {
+            List<Callable<Solution>> tasks = new ArrayList<>(candidates.size());
+            for (final Solution candidate : candidates) {
+                tasks.add(new Callable<Solution>() {
+                    @Override
+                    public Solution call() {
+                        return problem.refine(candidate, deadline);
+                    }
+                });
+            }
+            try {
+                for (Future<Solution> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("local search failed", e.getCause());
+            }
+        }
+        //a search that finished before the deadline ended in a local optimum, which is not worth searching again
+        boolean finished = System.nanoTime() - deadline < 0;
+
+        if (optima.size() > MAX_OPTIMA) {
+            optima.clear();
+        }
+        int size = population.size();
+        boolean added = false;
+        for (int k = 0; k < candidates.size(); k++) {
+            Solution result = results.get(k);
+            if (result == null) {
+                if (finished) {
+                    optima.add((PackedGenome) candidates.get(k).getVariable(0));
+                }
+                continue;
+            }
+            if (finished) {
+                optima.add((PackedGenome) result.getVariable(0));
+            }
+            algorithm.evaluate(result);
+            population.add(result);
+            refined++;
+            added = true;
+        }
+        if (added && population instanceof NondominatedSortingPopulation) {
+            ((NondominatedSortingPopulation) population).truncate(size);
+        }
+    }
+
+    /**
+     * @return number of refined solutions added to the population so far
+     */
+    long getRefined() {
+        return refined;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+import misc.IOUtils;
+import misc.Options;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A command-line client for PlacementServer
+ *
+ * usage: PlacementClient [--port=7171] [--out=placement.out] [--detach] [job options] arch.in ops.in graphs.in alpha.in
+ *        PlacementClient [--port=7171] [--out=placement.out] [--detach] [job options] --instance=DIR
+ *        PlacementClient [--port=7171] [--out=placement.out] --job=ID
+ *        PlacementClient [--port=7171] --cancel=ID
+ *        PlacementClient [--port=7171] --list
+ *
+ *   The first form sends the four files in the request, the second has the server read them from DIR.  Either waits
+ *   for the placement and writes it to --out, unless --detach, which only prints the job's ID; --job waits for a
+ *   job submitted earlier.  Job options (--alpha, --deadline=SECONDS, --max-evaluations, --window, --tolerance) are
+ *   passed on to the server.  Exits with 1 if the server answers with an error, which is printed.
+ */
+public class PlacementClient {
+
+    //options for the client itself, not passed on to the server
+    private static final Set<String> OWN = new HashSet<>(Arrays.asList("port", "out", "detach", "job", "cancel", "list"));
+
+    public static void main(String... args) throws IOException {
+        Options options = new Options(args);
+        String jobs = "http://127.0.0.1:" + options.getInt("port", 7171) + "/jobs";
+
+        HttpURLConnection connection;
+        if (options.has("list")) {
+            connection = (HttpURLConnection) new URL(jobs).openConnection();
+        }
+        else if (options.has("cancel")) {
+            connection = (HttpURLConnection) new URL(jobs + "/" + options.get("cancel", "")).openConnection();
+            connection.setRequestMethod("DELETE");
+        }
+        else if (options.has("job")) {
+            connection = (HttpURLConnection) new URL(jobs + "/" + options.get("job", "")).openConnection();
+        }
+        else {
+            StringBuilder query = new StringBuilder();
+            for (String arg : args) {
+                if (arg.startsWith("--")) {
+                    String name = arg.substring(2).split("=", 2)[0];
+                    if (!OWN.contains(name)) {
+                        query.append(query.length() == 0 ? "?" : "&").append(URLEncoder.encode(arg.substring(2), "UTF-8"));
+                    }
+                }
+            }
+            if (!options.has("detach")) {
+                query.append(query.length() == 0 ? "?" : "&").append("wait");
+            }
+
+            //the files one after another, each ending with a line break
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (String file : options.getFiles()) {
+                byte[] bytes = Files.readAllBytes(Paths.get(file));
+                body.write(bytes);
+                if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+                    body.write('\n');
+                }
+            }
+
+            connection = (HttpURLConnection) new URL(jobs + query).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "text/plain");
+            connection.setFixedLengthStreamingMode(body.size());
+            try (OutputStream out = connection.getOutputStream()) {
+                body.writeTo(out);
+            }
+        }
+
+        int code = connection.getResponseCode();
+        byte[] response;
+        try (InputStream in = (code >= 400 ? connection.getErrorStream() : connection.getInputStream())) {
+            response = IOUtils.readAll(in);
+        }
+        String id = connection.getHeaderField("X-Job-Id");
+        if (code >= 400) {
+            System.err.print((id != null ? "job " + id + ": " : "") + "HTTP " + code + ": " + new String(response, "UTF-8"));
+            System.exit(1);
+        }
+        if (code == 200 && (options.has("job") || !(options.has("list") || options.has("cancel")))) {
+            Files.write(Paths.get(options.get("out", "placement.out")), response);
+            System.out.print("job " + id + ": placed in " + connection.getHeaderField("X-Seconds") + " s, " +
+                    connection.getHeaderField("X-Evaluations") + " evaluations, written to " +
+                    options.get("out", "placement.out") + "\n");
+        }
+        else {
+            System.out.print(new String(response, "UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,540 @@
+import cache.EvaluationCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import metrics.MetricsWriter;
+import misc.FeasibilityRepair;
+import misc.IOUtils;
+import misc.Instance;
+import misc.InstanceCache;
+import misc.InstanceFormatException;
+import misc.Options;
+import misc.Parser;
+import misc.Placement;
+import misc.PlacementWriter;
+import termination.Cancellation;
+import termination.StoppingRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Places instances sent over HTTP on the loopback interface, in one long-lived JVM
+ *
+ * Jobs run on a fixed pool of workers, each job single-threaded as in a batch, and wait in a bounded queue while
+ *  every worker is busy; a job that finds the queue full is turned away.  The problem built for an instance is kept,
+ *  keyed by a hash of the instance's files, for the next job on the same instance, which gets its own copy through
+ *  withAlpha() as the runs of a sweep do.  Parsing and set-up are then skipped, and after the warm-up run at start
+ *  the JIT has compiled the evaluator, so a small assay is placed in well under a second.
+ *
+ *   POST   /jobs     submit a job: the body holds arch.in, ops.in, graphs.in and alpha.in one after another, or the
+ *                    query names a folder holding them with instance=DIR.  Query options: alpha, deadline (seconds
+ *                    from submission), max-evaluations, window, tolerance, and wait to answer as GET /jobs/ID would.
+ *                    Answers 202 with the job's ID, 400 for bad options, or 503 when the queue is full.
+ *   GET    /jobs     list every job still remembered: ID, status, seconds, evaluations
+ *   GET    /jobs/ID  wait for the job to end; answers 200 with what Main writes to placement.out, 400 if the instance
+ *                    is malformed, 410 if the job was cancelled, 504 if its deadline passed before it started, or
+ *                    500 if it failed
+ *   DELETE /jobs/ID  cancel the job; a running job stops after its current generation
+ *
+ * A job that runs into its deadline stops there and answers with the best placement found by then.  Every response
+ *  carries the job's ID, evaluations, and seconds in X-Job-Id, X-Evaluations, and X-Seconds.
+ */
+class PlacementServer implements Closeable {
+
+    enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED, EXPIRED }
+
+    //finished jobs remembered for GET, beyond which the oldest are forgotten
+    private static final int RETAINED = 256;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final int archiveCapacity;
+    private final int cacheCapacity;
+    //-1 to keep the problem's default
+    private final int deltaLimit;
+    private final boolean biObjective;
+    private final FeasibilityRepair.Mode repair;
+    private final double seeding;
+    private final int memeticElites;
+    private final int memeticMillis;
+    private final StoppingRule stoppingRule;
+    private final MetricsWriter metrics;
+    private final InstanceCache instanceCache;
+
+    private final ThreadPoolExecutor workers;
+    private final Map<ByteBuffer, DMFB_ReconfigPlacementProblem> warm;
+    private final ConcurrentSkipListMap<Integer, Job> jobs;
+    private final AtomicInteger nextId;
+    private final CountDownLatch closed;
+    private HttpServer http;
+    private ExecutorService handlers;
+
+    /**
+     * @param archiveCapacity number of distinct best placements kept per job
+     * @param cacheCapacity capacity of each job's evaluation cache, 0 for none
+     * @param deltaLimit delta evaluation limit for every job, -1 for the default
+     * @param biObjective optimise D_comm and T_mix separately
+     * @param repair whether and how every job repairs placements before evaluating them
+     * @param seeding fraction of every job's initial population that is constructed rather than random
+     * @param memeticElites number of elites every job refines by local search per generation, 0 for none
+     * @param memeticMillis time budget of that local search per generation
+     * @param stoppingRule when each job stops, unless the job asks otherwise
+     * @param metrics where jobs stream their per-generation metrics, or null
+     * @param instanceCache where jobs naming a folder find their instances compiled, or null to always parse them
+     * @param threads number of jobs running at once
+     * @param queue number of jobs waiting for a worker at most
+     * @param warmInstances number of instances whose problems are kept for later jobs
+     */
+    PlacementServer(int archiveCapacity, int cacheCapacity, int deltaLimit, boolean biObjective,
+                    FeasibilityRepair.Mode repair, double seeding, int memeticElites, int memeticMillis,
+                    StoppingRule stoppingRule, MetricsWriter metrics, InstanceCache instanceCache, int threads,
+                    int queue, final int warmInstances) {
+        if (threads < 1 || queue < 1 || warmInstances < 0) {
+            throw new IllegalArgumentException("the server needs at least one worker and one queue slot");
+        }
+        this.archiveCapacity = archiveCapacity;
+        this.cacheCapacity = cacheCapacity;
+        this.deltaLimit = deltaLimit;
+        this.biObjective = biObjective;
+        this.repair = repair;
+        this.seeding = seeding;
+        this.memeticElites = memeticElites;
+        this.memeticMillis = memeticMillis;
+        this.stoppingRule = stoppingRule;
+        this.metrics = metrics;
+        this.instanceCache = instanceCache;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queue));
+        this.warm = new LinkedHashMap<ByteBuffer, DMFB_ReconfigPlacementProblem>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, DMFB_ReconfigPlacementProblem> eldest) {
+                return size() > warmInstances;
+            }
+        };
+        this.jobs = new ConcurrentSkipListMap<>();
+        this.nextId = new AtomicInteger(1);
+        this.closed = new CountDownLatch(1);
+    }
+
+    /**
+     * Places the bundled aquacorePCR instance for the given number of evaluations, so that the JIT has compiled the
+     *  evaluator before the first job comes in
+     *
+     * @return seconds taken
+     */
+    double warmUp(int evaluations) throws IOException {
+        long start = System.nanoTime();
+        DMFB_ReconfigPlacementProblem problem = newProblem(new Parser("aquacorePCR/arch.in", "aquacorePCR/ops.in",
+                "aquacorePCR/graphs.in", "aquacorePCR/alpha.in"));
+        Main.optimise(problem, 1, new StoppingRule(0, stoppingRule.getTolerance(), evaluations, 0), null, "warm-up");
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Starts answering on the loopback interface
+     *
+     * @param port the port to listen on, 0 for any free one
+     * @return the port listened on
+     */
+    int start(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        //waiting for a job holds a handler thread, so they are not pooled to a fixed number
+        handlers = Executors.newCachedThreadPool();
+        http.setExecutor(handlers);
+        http.createContext("/jobs", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } catch (RuntimeException e) {
+                    respond(exchange, 500, null, String.valueOf(e));
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        http.start();
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Blocks until the server is closed
+     */
+    void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops answering, cancels every job, and waits for the running ones to stop
+     */
+    @Override
+    public void close() {
+        if (http != null) {
+            http.stop(0);
+            handlers.shutdownNow();
+        }
+        for (Job job : jobs.values()) {
+            job.cancellation.cancel();
+        }
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed.countDown();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Options query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (path.equals("/jobs") || path.equals("/jobs/")) {
+            if (method.equals("POST")) {
+                submit(exchange, query);
+            }
+            else if (method.equals("GET")) {
+                list(exchange);
+            }
+            else {
+                respond(exchange, 405, null, "use GET or POST on /jobs");
+            }
+            return;
+        }
+
+        Job job;
+        try {
+            job = jobs.get(Integer.parseInt(path.substring("/jobs/".length())));
+        } catch (NumberFormatException e) {
+            job = null;
+        }
+        if (job == null) {
+            respond(exchange, 404, null, "no such job: " + path);
+        }
+        else if (method.equals("GET")) {
+            result(exchange, job);
+        }
+        else if (method.equals("DELETE")) {
+            cancel(exchange, job);
+        }
+        else {
+            respond(exchange, 405, job, "use GET or DELETE on /jobs/ID");
+        }
+    }
+
+    /**
+     * @return the query's parameters as options, e.g. "alpha=0.5&wait" as --alpha=0.5 --wait
+     */
+    private static Options parseQuery(String query) throws IOException {
+        List<String> args = new ArrayList<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (!parameter.isEmpty()) {
+                    args.add("--" + URLDecoder.decode(parameter, "UTF-8"));
+                }
+            }
+        }
+        return new Options(args.toArray(new String[0]));
+    }
+
+    private void submit(HttpExchange exchange, Options query) throws IOException {
+        byte[] body = IOUtils.readAll(exchange.getRequestBody());
+        final Job job;
+        try {
+            job = new Job(nextId.getAndIncrement(), query, body);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, null, String.valueOf(e.getMessage()));
+            return;
+        }
+        FutureTask<Void> task = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                execute(job);
+            }
+        }, null);
+        job.task = task;
+        jobs.put(job.id, job);
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, null, "queue full, " + workers.getQueue().size() + " jobs waiting");
+            return;
+        }
+        forget();
+
+        if (query.has("wait")) {
+            result(exchange, job);
+        }
+        else {
+            exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+            respond(exchange, 202, job, String.valueOf(job.id));
+        }
+    }
+
+    /**
+     * Forgets the oldest finished jobs beyond RETAINED
+     */
+    private void forget() {
+        int excess = jobs.size() - RETAINED;
+        for (Job job : jobs.values()) {
+            if (excess <= 0) {
+                break;
+            }
+            if (job.finished.getCount() == 0) {
+                jobs.remove(job.id);
+                excess--;
+            }
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("id\tstatus\tseconds\tevaluations");
+        for (Job job : jobs.values()) {
+            lines.add(job.id + "\t" + job.status.name().toLowerCase() + "\t" + String.format("%.3f", job.seconds) +
+                    "\t" + job.evaluations);
+        }
+        respond(exchange, 200, null, lines);
+    }
+
+    private void result(HttpExchange exchange, Job job) throws IOException {
+        try {
+            job.finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, job, "server is shutting down");
+            return;
+        }
+        switch (job.status) {
+            case DONE:
+                respond(exchange, 200, job, job.lines);
+                break;
+            case CANCELLED:
+                respond(exchange, 410, job, "job " + job.id + " was cancelled");
+                break;
+            case EXPIRED:
+                respond(exchange, 504, job, "job " + job.id + " reached its deadline before it started");
+                break;
+            default:
+                respond(exchange, (job.malformed ? 400 : 500), job, job.error);
+        }
+    }
+
+    private void cancel(HttpExchange exchange, Job job) throws IOException {
+        if (job.finished.getCount() == 0) {
+            respond(exchange, 409, job, "job " + job.id + " has already ended, " + job.status.name().toLowerCase());
+            return;
+        }
+        job.cancellation.cancel();
+        //a job still queued is taken off the queue at once, freeing its slot
+        if (workers.remove(job.task)) {
+            job.status = Status.CANCELLED;
+            job.finished.countDown();
+        }
+        respond(exchange, 200, job, "job " + job.id + " cancelled");
+    }
+
+    private void execute(Job job) {
+        long start = System.nanoTime();
+        DMFB_ReconfigPlacementProblem problem = null;
+        try {
+            long remaining = (job.deadline == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(job.deadline - start));
+            if (job.cancellation.isCancelled()) {
+                job.status = Status.CANCELLED;
+                return;
+            }
+            if (job.deadline != 0 && remaining <= 0) {
+                job.status = Status.EXPIRED;
+                return;
+            }
+            job.status = Status.RUNNING;
+
+            DMFB_ReconfigPlacementProblem base = warmProblem(job);
+            double alpha = (Double.isNaN(job.alpha) ? base.getAlpha() : job.alpha);
+            problem = base.withAlpha(alpha);
+            if (cacheCapacity > 0) {
+                problem.setEvaluationCache(new EvaluationCache(cacheCapacity));
+            }
+            long maxMillis = stoppingRule.getMaxMillis();
+            if (remaining > 0) {
+                maxMillis = (maxMillis == 0 ? remaining : Math.min(maxMillis, remaining));
+            }
+            Main.optimise(problem, 1, new StoppingRule(job.window, job.tolerance, job.maxEvaluations, maxMillis),
+                    metrics, "job-" + job.id, null, job.cancellation);
+
+            if (job.cancellation.isCancelled()) {
+                job.status = Status.CANCELLED;
+                return;
+            }
+            Placement best = problem.getPlacements().getBest();
+            job.lines = (best != null ? PlacementWriter.format(best, problem.getOperations(), alpha) :
+                    Collections.singletonList(PlacementWriter.NO_SOLUTION));
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            job.malformed = (e instanceof InstanceFormatException);
+            job.error = String.valueOf(e);
+            job.status = Status.FAILED;
+        } finally {
+            job.seconds = (System.nanoTime() - start) / 1e9;
+            job.evaluations = (problem == null ? 0 : problem.getNumberOfEvaluations());
+            job.finished.countDown();
+        }
+    }
+
+    /**
+     * @return the problem kept for the job's instance, set up now if there is none
+     */
+    private DMFB_ReconfigPlacementProblem warmProblem(Job job) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(job.files != null ? InstanceCache.hash(job.files) : sha256(job.body));
+        synchronized (warm) {
+            DMFB_ReconfigPlacementProblem base = warm.get(key);
+            if (base != null) {
+                return base;
+            }
+        }
+        Instance instance;
+        if (job.files == null) {
+            instance = new Parser(new ByteArrayInputStream(job.body), "job " + job.id);
+        }
+        else {
+            instance = (instanceCache != null ? instanceCache.load(job.files) : new Parser(job.files));
+        }
+        DMFB_ReconfigPlacementProblem base = newProblem(instance);
+        synchronized (warm) {
+            warm.put(key, base);
+        }
+        return base;
+    }
+
+    private DMFB_ReconfigPlacementProblem newProblem(Instance instance) {
+        DMFB_ReconfigPlacementProblem problem = Main.newProblem(instance, archiveCapacity, biObjective);
+        if (deltaLimit >= 0) {
+            problem.setDeltaLimit(deltaLimit);
+        }
+        problem.setRepair(repair);
+        problem.setSeeding(seeding);
+        problem.setMemetic(memeticElites, memeticMillis);
+        return problem;
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, Job job, String message) throws IOException {
+        respond(exchange, code, job, Collections.singletonList(message));
+    }
+
+    /**
+     * Sends the lines as text, each ending with the platform's line separator as in placement.out
+     */
+    private static void respond(HttpExchange exchange, int code, Job job, List<String> lines) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.lineSeparator());
+        }
+        byte[] body = sb.toString().getBytes(UTF8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (job != null) {
+            exchange.getResponseHeaders().set("X-Job-Id", String.valueOf(job.id));
+            exchange.getResponseHeaders().set("X-Evaluations", String.valueOf(job.evaluations));
+            exchange.getResponseHeaders().set("X-Seconds", String.format("%.3f", job.seconds));
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * One placement request, from submission until it is forgotten
+     */
+    private class Job {
+        final int id;
+        //the instance files, or null if the instance came in the body
+        final String[] files;
+        final byte[] body;
+        //NaN for the instance's own
+        final double alpha;
+        final int window;
+        final double tolerance;
+        final long maxEvaluations;
+        //System.nanoTime() by which the job must have started, and ends; 0 for none
+        final long deadline;
+        final Cancellation cancellation = new Cancellation();
+        final CountDownLatch finished = new CountDownLatch(1);
+        FutureTask<Void> task;
+
+        volatile Status status = Status.QUEUED;
+        volatile List<String> lines;
+        volatile String error;
+        volatile boolean malformed;
+        volatile double seconds;
+        volatile long evaluations;
+
+        /**
+         * @throws IllegalArgumentException if the query or body do not make a job
+         */
+        Job(int id, Options query, byte[] body) {
+            this.id = id;
+            if (query.has("instance")) {
+                Path folder = Paths.get(query.get("instance", "."));
+                this.files = new String[Batch.INSTANCE_FILES.length];
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = folder.resolve(Batch.INSTANCE_FILES[i]).toString();
+                }
+            }
+            else if (body.length == 0) {
+                throw new IllegalArgumentException("send the instance in the body or name its folder with instance=DIR");
+            }
+            else {
+                this.files = null;
+            }
+            this.body = body;
+            //NumberFormatException is an IllegalArgumentException too
+            this.alpha = query.getDouble("alpha", Double.NaN);
+            this.window = query.getInt("window", stoppingRule.getWindow());
+            this.tolerance = query.getDouble("tolerance", stoppingRule.getTolerance());
+            this.maxEvaluations = query.getLong("max-evaluations", stoppingRule.getMaxEvaluations());
+            double seconds = query.getDouble("deadline", 0);
+            if (seconds < 0) {
+                throw new IllegalArgumentException("deadline must not be negative, was " + seconds);
+            }
+            this.deadline = (seconds == 0 ? 0 : System.nanoTime() + Math.max(1, (long) (seconds * 1e9)));
+            //checks the settings, including that the job will stop
+            new StoppingRule(window, tolerance, maxEvaluations, (seconds > 0 ? 1 : stoppingRule.getMaxMillis()));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package archive;
+
+import misc.Phenotype;
+import misc.Placement;
+
+import operation.OperationSize;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded archive of the best distinct feasible placements seen so far, ordered by objective (lower is better)
+ *
+ * Duplicates are detected by hashing the decoded placement (positions, orientations, mix sizes) into a key, so a
+ *  placement reached through different genomes is only kept once.  Entries live in a skip list ordered by objective
+ *  (O(log n) insertion) and a concurrent map keyed by content (O(1) dedup); both are lock-free, so evaluation
+ *  threads can offer() concurrently.  When the archive is over capacity the worst entries are dropped.
+ */
+public class EliteArchive {
+
+    private final int capacity;
+    private final ConcurrentSkipListSet<Entry> ordered;
+    private final ConcurrentMap<Key, Entry> byContent;
+    private final AtomicInteger size;
+    private final AtomicLong sequence;
+
+    private final ThreadLocal<Key> probe = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
+
+    /**
+     * @param capacity maximum number of placements kept
+     */
+    public EliteArchive(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("archive capacity must be positive, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.ordered = new ConcurrentSkipListSet<>(new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int c = Double.compare(a.placement.getObj(), b.placement.getObj());
+                return (c != 0 ? c : Long.compare(a.sequence, b.sequence));
+            }
+        });
+        this.byContent = new ConcurrentHashMap<>();
+        this.size = new AtomicInteger();
+        this.sequence = new AtomicLong();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Offers a decoded feasible placement to the archive.  Nothing is allocated unless the placement is good enough
+     *  to be kept: duplicates are looked up with a per-thread probe key.
+     *
+     * @param sol the decoded placement; only read, and may be reused by the caller afterwards
+     * @return true if the placement was added
+     */
+    public boolean offer(Phenotype sol) {
+        if (size.get() >= capacity) {
+            Entry worst = worst();
+            if (worst != null && sol.Obj >= worst.placement.getObj()) {
+                return false;
+            }
+        }
+
+        if (byContent.containsKey(probe.get().set(sol))) {
+            return false;
+        }
+        Key key = new Key().set(sol);
+        Entry entry = new Entry(sol.toPlacement(), key, sequence.getAndIncrement());
+        if (byContent.putIfAbsent(key, entry) != null) {
+            return false;
+        }
+        ordered.add(entry);
+
+        size.incrementAndGet();
+
+        //drop the worst entries until we are back within capacity; the CAS keeps racing threads from over-evicting
+        while (true) {
+            int current = size.get();
+            if (current <= capacity) {
+                break;
+            }
+            if (!size.compareAndSet(current, current - 1)) {
+                continue;
+            }
+            Entry evicted = ordered.pollLast();
+            if (evicted == null) {
+                size.incrementAndGet();
+                break;
+            }
+            byContent.remove(evicted.key, evicted);
+        }
+        return true;
+    }
+
+    /**
+     * @return the placement with the lowest objective, or null if the archive is empty
+     */
+    public Placement getBest() {
+        try {
+            return ordered.first().placement;
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return up to k placements, best first
+     */
+    public List<Placement> getBest(int k) {
+        List<Placement> best = new ArrayList<>(Math.min(k, size()));
+        Iterator<Entry> it = ordered.iterator();
+        while (it.hasNext() && best.size() < k) {
+            best.add(it.next().placement);
+        }
+        return best;
+    }
+
+    /**
+     * @return every archived placement, best first
+     */
+    public List<Placement> toList() {
+        return getBest(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes every archived placement, best first: per operation its position, orientation, mix size code, and for
+     *  a mix its unrotated height and width, then D_comm, T_mix, and Obj
+     */
+    public void write(DataOutput out) throws IOException {
+        List<Entry> entries = new ArrayList<>(ordered);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            int[] content = entry.key.content;
+            out.writeInt(content.length / 4);
+            for (int i = 0; i < content.length / 4; i++) {
+                out.writeShort(content[4 * i]);
+                out.writeShort(content[4 * i + 1]);
+                out.writeByte(content[4 * i + 2]);
+                out.writeByte(content[4 * i + 3]);
+                if (content[4 * i + 3] >= 0) {
+                    OperationSize<Integer, Integer> size = entry.placement.getMix_sizes().get(i);
+                    out.writeByte(size.getHeight());
+                    out.writeByte(size.getWidth());
+                }
+            }
+            out.writeDouble(entry.placement.getD_comm());
+            out.writeDouble(entry.placement.getT_mix());
+            out.writeDouble(entry.placement.getObj());
+        }
+    }
+
+    /**
+     * Replaces the archive's contents with what write() wrote; placements that tie on objective keep their order
+     */
+    public void read(DataInput in) throws IOException {
+        clear();
+        for (int count = in.readInt(); count > 0; count--) {
+            Phenotype sol = new Phenotype(in.readInt());
+            for (int i = 0; i < sol.size(); i++) {
+                sol.x[i] = in.readShort();
+                sol.y[i] = in.readShort();
+                sol.orientation[i] = in.readByte();
+                sol.sizeCode[i] = in.readByte();
+                if (sol.sizeCode[i] >= 0) {
+                    int height = in.readByte();
+                    int width = in.readByte();
+                    sol.height[i] = (sol.orientation[i] == 0 ? height : width);
+                    sol.width[i] = (sol.orientation[i] == 0 ? width : height);
+                }
+            }
+            sol.D_comm = in.readDouble();
+            sol.T_mix = in.readDouble();
+            sol.Obj = in.readDouble();
+            offer(sol);
+        }
+    }
+
+    public void clear() {
+        ordered.clear();
+        byContent.clear();
+        size.set(0);
+    }
+
+    private Entry worst() {
+        try {
+            return ordered.last();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private static class Entry {
+        final Placement placement;
+        final Key key;
+        final long sequence;
+
+        Entry(Placement placement, Key key, long sequence) {
+            this.placement = placement;
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Content of a decoded placement: x, y, orientation, and mix size code of every operation; probe keys are
+     *  refilled in place for every offer
+     */
+    private static class Key {
+        int[] content = new int[0];
+        int hash;
+
+        Key set(Phenotype sol) {
+            int n = sol.size();
+            if (content.length != 4 * n) {
+                content = new int[4 * n];
+            }
+            for (int i = 0; i < n; i++) {
+                content[4 * i] = sol.x[i];
+                content[4 * i + 1] = sol.y[i];
+                content[4 * i + 2] = sol.orientation[i];
+                content[4 * i + 3] = sol.sizeCode[i];
+            }
+            hash = Arrays.hashCode(content);
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return this.hash == other.hash && Arrays.equals(this.content, other.content);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package cache;
+
+import genome.PackedGenome;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of evaluation results keyed by genome contents
+ *
+ * Converged NSGA-II populations keep producing children identical to earlier individuals; a hit returns the stored
+ *  objectives and constraints so the genome is neither decoded nor checked again.  The cache is split into
+ *  independently locked LRU segments chosen by hash, and lookups reuse a per-thread probe key, so a hit allocates
+ *  nothing.
+ */
+public class EvaluationCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final Segment[] segments;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    private final ThreadLocal<Key> probe = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
+
+    /**
+     * @param capacity maximum number of genomes kept; split exactly over the segments, of which there are fewer when
+     *                 the capacity is below 16
+     */
+    public EvaluationCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("cache capacity must be positive, was " + capacity);
+        }
+        this.capacity = capacity;
+        //a power of two, so segmentFor() can mask; the first capacity % n segments hold one genome more
+        int n = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(capacity / n + (i < capacity % n ? 1 : 0));
+        }
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Looks up a genome and, on a hit, copies the stored results into the given arrays
+     *
+     * @return true on a hit
+     */
+    public boolean lookup(PackedGenome genome, double[] objectives, double[] constraints) {
+        Key key = probe.get().set(genome);
+        Segment segment = segmentFor(key.hash);
+        Result result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+        System.arraycopy(result.objectives, 0, objectives, 0, objectives.length);
+        System.arraycopy(result.constraints, 0, constraints, 0, constraints.length);
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores the results of evaluating a genome; the arrays are copied
+     */
+    public void put(PackedGenome genome, double[] objectives, double[] constraints) {
+        Key key = new Key().set(genome);
+        Result result = new Result(objectives.clone(), constraints.clone());
+        Segment segment = segmentFor(key.hash);
+        synchronized (segment) {
+            segment.put(key, result);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return fraction of lookups that were hits, 0 if nothing was looked up yet
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0 ? 0.0 : (double) h / total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits / %d lookups (%.1f%%), %d evictions",
+                getHits(), getHits() + getMisses(), 100.0 * getHitRate(), getEvictions());
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * One access-ordered LRU map; callers hold its monitor
+     */
+    private class Segment extends LinkedHashMap<Key, Result> {
+        private static final long serialVersionUID = -4273118961705628917L;
+
+        private final int limit;
+
+        Segment(int limit) {
+            super(16, 0.75f, true);
+            this.limit = limit;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+            if (size() > limit) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class Result {
+        final double[] objectives;
+        final double[] constraints;
+
+        Result(double[] objectives, double[] constraints) {
+            this.objectives = objectives;
+            this.constraints = constraints;
+        }
+    }
+
+    /**
+     * Genome contents plus their hash; probe keys are refilled in place for every lookup
+     */
+    private static class Key {
+        long[] words = new long[0];
+        int hash;
+
+        Key set(PackedGenome genome) {
+            if (words.length != genome.getNumberOfWords()) {
+                words = new long[genome.getNumberOfWords()];
+            }
+            for (int w = 0; w < words.length; w++) {
+                words[w] = genome.getWord(w);
+            }
+            long h = genome.longHashCode();
+            hash = (int) (h ^ (h >>> 32));
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return this.hash == other.hash && Arrays.equals(this.words, other.words);
+        }
+    }
+}
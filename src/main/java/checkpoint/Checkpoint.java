@@ -0,0 +1,276 @@
+package checkpoint;
+
+import genome.PackedGenome;
+import org.moeaframework.core.EvolutionaryAlgorithm;
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.Solution;
+import termination.ConvergenceTermination;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of a run between two generations, in a compact binary format:
+ *
+ *   int magic, int version
+ *   int evaluations made by the algorithm
+ *   int population size, then for each member in population order:
+ *       int number of genome words, the words
+ *       int number of objectives, the objectives
+ *       int number of constraints, int number of them that are not 0, (int index, double value) for each of those
+ *       int length, the problem's state for the member (Checkpointable.writeSolution())
+ *   int length, the problem's own state (Checkpointable.writeCheckpoint())
+ *   int length, the progress of the stopping condition (ConvergenceTermination.write())
+ *   int length, the random number generator, Java-serialised
+ *   long CRC32 of everything before it
+ *
+ * Everything is big-endian.  The sections the checkpoint does not interpret itself are length-prefixed, so each is
+ *  read back by whatever wrote it.  Constraints are stored sparsely since a feasible member has none violated.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x444d434b;
+    private static final int VERSION = 1;
+
+    private final int evaluations;
+    private final long[][] genomes;
+    private final double[][] objectives;
+    private final double[][] constraints;
+    private final byte[][] states;
+    private final byte[] problemState;
+    private final byte[] progress;
+    private final byte[] random;
+
+    private Checkpoint(int evaluations, long[][] genomes, double[][] objectives, double[][] constraints,
+                       byte[][] states, byte[] problemState, byte[] progress, byte[] random) {
+        this.evaluations = evaluations;
+        this.genomes = genomes;
+        this.objectives = objectives;
+        this.constraints = constraints;
+        this.states = states;
+        this.problemState = problemState;
+        this.progress = progress;
+        this.random = random;
+    }
+
+    /**
+     * Encodes the state of a run between two generations; everything is copied, so the run may carry on as soon as
+     *  this returns
+     *
+     * @param algorithm the algorithm, whose population members each hold a single PackedGenome
+     * @param problem the problem being optimised
+     * @param condition the run's stopping condition, or null
+     * @return the encoded checkpoint
+     */
+    public static byte[] capture(EvolutionaryAlgorithm algorithm, Checkpointable problem,
+                                 ConvergenceTermination condition) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(algorithm.getNumberOfEvaluations());
+
+        ByteArrayOutputStream section = new ByteArrayOutputStream();
+        DataOutputStream sectionOut = new DataOutputStream(section);
+        out.writeInt(algorithm.getPopulation().size());
+        for (Solution solution : algorithm.getPopulation()) {
+            if (solution.getNumberOfVariables() != 1 || !(solution.getVariable(0) instanceof PackedGenome)) {
+                throw new IllegalArgumentException("only solutions holding a single PackedGenome can be checkpointed");
+            }
+            PackedGenome genome = (PackedGenome) solution.getVariable(0);
+            out.writeInt(genome.getNumberOfWords());
+            for (int w = 0; w < genome.getNumberOfWords(); w++) {
+                out.writeLong(genome.getWord(w));
+            }
+
+            double[] values = solution.getObjectives();
+            out.writeInt(values.length);
+            for (double value : values) {
+                out.writeDouble(value);
+            }
+
+            values = solution.getConstraints();
+            int violated = 0;
+            for (double value : values) {
+                if (value != 0.0) {
+                    violated++;
+                }
+            }
+            out.writeInt(values.length);
+            out.writeInt(violated);
+            for (int c = 0; c < values.length; c++) {
+                if (values[c] != 0.0) {
+                    out.writeInt(c);
+                    out.writeDouble(values[c]);
+                }
+            }
+
+            section.reset();
+            problem.writeSolution(solution, sectionOut);
+            writeSection(out, section);
+        }
+
+        section.reset();
+        problem.writeCheckpoint(sectionOut);
+        writeSection(out, section);
+
+        section.reset();
+        if (condition != null) {
+            condition.write(sectionOut);
+        }
+        writeSection(out, section);
+
+        section.reset();
+        try (ObjectOutputStream objects = new ObjectOutputStream(section)) {
+            objects.writeObject(PRNG.getRandom());
+        }
+        writeSection(out, section);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    private static void writeSection(DataOutputStream out, ByteArrayOutputStream section) throws IOException {
+        out.writeInt(section.size());
+        section.writeTo(out);
+    }
+
+    /**
+     * @param file a checkpoint written by CheckpointWriter
+     * @throws IOException if the file cannot be read, is not a checkpoint, or is damaged
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 12) {
+            throw new IOException(file + " is not a checkpoint");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file + " is not a checkpoint");
+        }
+        in.skipBytes(bytes.length - 12);
+        if (in.readLong() != crc.getValue()) {
+            throw new IOException(file + " is damaged (checksum mismatch)");
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(bytes, 4, bytes.length - 12));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException(file + " has checkpoint format version " + version + ", expected " + VERSION);
+        }
+        int evaluations = in.readInt();
+        int size = in.readInt();
+        long[][] genomes = new long[size][];
+        double[][] objectives = new double[size][];
+        double[][] constraints = new double[size][];
+        byte[][] states = new byte[size][];
+        for (int k = 0; k < size; k++) {
+            genomes[k] = new long[in.readInt()];
+            for (int w = 0; w < genomes[k].length; w++) {
+                genomes[k][w] = in.readLong();
+            }
+            objectives[k] = new double[in.readInt()];
+            for (int j = 0; j < objectives[k].length; j++) {
+                objectives[k][j] = in.readDouble();
+            }
+            constraints[k] = new double[in.readInt()];
+            for (int violated = in.readInt(); violated > 0; violated--) {
+                int c = in.readInt();
+                constraints[k][c] = in.readDouble();
+            }
+            states[k] = readSection(in);
+        }
+        return new Checkpoint(evaluations, genomes, objectives, constraints, states, readSection(in),
+                readSection(in), readSection(in));
+    }
+
+    private static byte[] readSection(DataInputStream in) throws IOException {
+        byte[] section = new byte[in.readInt()];
+        in.readFully(section);
+        return section;
+    }
+
+    /**
+     * @return number of evaluations the algorithm had made
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return number of members in the population
+     */
+    public int getPopulationSize() {
+        return genomes.length;
+    }
+
+    /**
+     * Rebuilds the population, in its original order
+     *
+     * @param problem makes the solutions, i.e. the problem the resumed algorithm evaluates on
+     * @param state restores the problem's state on each of them
+     */
+    public List<Solution> newPopulation(Problem problem, Checkpointable state) throws IOException {
+        List<Solution> population = new ArrayList<>(genomes.length);
+        for (int k = 0; k < genomes.length; k++) {
+            Solution solution = problem.newSolution();
+            PackedGenome genome = (PackedGenome) solution.getVariable(0);
+            if (genome.getNumberOfWords() != genomes[k].length || solution.getNumberOfObjectives() !=
+                    objectives[k].length || solution.getNumberOfConstraints() != constraints[k].length) {
+                throw new IOException("checkpoint was written for a different instance");
+            }
+            for (int w = 0; w < genomes[k].length; w++) {
+                genome.setWord(w, genomes[k][w]);
+            }
+            solution.setObjectives(objectives[k]);
+            solution.setConstraints(constraints[k]);
+            state.readSolution(solution, new DataInputStream(new ByteArrayInputStream(states[k])));
+            population.add(solution);
+        }
+        return population;
+    }
+
+    /**
+     * Puts back the problem's own state
+     */
+    public void restoreProblem(Checkpointable problem) throws IOException {
+        problem.readCheckpoint(new DataInputStream(new ByteArrayInputStream(problemState)));
+    }
+
+    /**
+     * Puts back the progress of the stopping condition, for its next initialize()
+     */
+    public void restoreProgress(ConvergenceTermination condition) throws IOException {
+        if (progress.length == 0) {
+            return;
+        }
+        condition.resume(new DataInputStream(new ByteArrayInputStream(progress)));
+    }
+
+    /**
+     * Makes the random number generator MOEA draws from the one saved, in the state it was in
+     */
+    public void restoreRandom() throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(random))) {
+            PRNG.setRandom((Random) in.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("checkpoint holds an unknown random number generator", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package checkpoint;
+
+import misc.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes encoded checkpoints to one file on a background thread, so the run never waits for the disk
+ *
+ * Each checkpoint is written with IOUtils.writeAtomically(), so the file always holds a whole checkpoint, the
+ *  previous one until the new one is complete.  A checkpoint
+ *  submitted while another is still waiting to be written replaces it; only the latest matters.  I/O errors are
+ *  remembered rather than thrown, so a full disk never stops a run; see getError().
+ */
+public class CheckpointWriter implements Closeable {
+
+    private final Path file;
+    private final ExecutorService thread;
+    private final AtomicReference<byte[]> pending;
+    private volatile IOException error;
+    private volatile int written;
+
+    /**
+     * @param file the file to (over)write
+     */
+    public CheckpointWriter(Path file) {
+        this.file = file;
+        this.thread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "checkpoint-writer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.pending = new AtomicReference<>();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Queues a checkpoint and returns at once
+     *
+     * @param checkpoint an encoded checkpoint, no longer modified by the caller
+     */
+    public void submit(byte[] checkpoint) {
+        if (pending.getAndSet(checkpoint) == null) {
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] latest = pending.getAndSet(null);
+                    if (latest != null) {
+                        write(latest);
+                    }
+                }
+            });
+        }
+    }
+
+    private void write(byte[] checkpoint) {
+        try {
+            IOUtils.writeAtomically(file, ByteBuffer.wrap(checkpoint));
+            written++;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * @return number of checkpoints written so far
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the last error writing a checkpoint, or null if there was none
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Writes whatever is still queued, then stops the background thread
+     */
+    @Override
+    public void close() throws IOException {
+        thread.shutdown();
+        try {
+            thread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
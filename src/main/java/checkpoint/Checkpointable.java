@@ -0,0 +1,36 @@
+package checkpoint;
+
+import org.moeaframework.core.Solution;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A problem that carries state from generation to generation which a Checkpoint must hold to resume a run exactly
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes the problem's own state, e.g. its archive and counters, along with enough about the instance for
+     *  readCheckpoint() to refuse a checkpoint of another one
+     */
+    void writeCheckpoint(DataOutput out) throws IOException;
+
+    /**
+     * Replaces the problem's own state with what writeCheckpoint() wrote
+     *
+     * @throws IOException if the checkpoint is malformed or belongs to another instance
+     */
+    void readCheckpoint(DataInput in) throws IOException;
+
+    /**
+     * Writes whatever the problem keeps on an evaluated solution besides its variables, objectives, and constraints
+     */
+    void writeSolution(Solution solution, DataOutput out) throws IOException;
+
+    /**
+     * Puts back what writeSolution() wrote, on a solution whose variables, objectives, and constraints are restored
+     */
+    void readSolution(Solution solution, DataInput in) throws IOException;
+}
@@ -0,0 +1,148 @@
+package checkpoint;
+
+import metrics.GenerationListener;
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.EvolutionaryAlgorithm;
+import org.moeaframework.core.FrameworkException;
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.operator.RandomInitialization;
+import org.moeaframework.core.spi.AlgorithmFactory;
+import org.moeaframework.util.TypedProperties;
+import termination.ConvergenceTermination;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Checkpoints a run every so often, and resumes a run from its last checkpoint
+ *
+ * Add it after every other condition: those that change the population or keep progress of their own must have
+ *  seen a generation before it is captured.  A checkpoint is encoded on the run's thread, which is quick, and written to
+ *  disk by a CheckpointWriter on a thread of its own.
+ *
+ * Resuming puts back the problem's state and the random number generator at once, the stopping condition's
+ *  progress in its next initialize(), and the population through newAlgorithmFactory().  Evaluation is
+ *  deterministic, so the resumed run goes on exactly as the interrupted one would have, as long as nothing in it
+ *  depends on the clock: a --max-time cap, or the time budget of memetic refinement.
+ */
+public class Checkpointer extends GenerationListener implements Closeable {
+
+    private final Checkpointable problem;
+    private final CheckpointWriter writer;
+    private final long intervalMillis;
+
+    private ConvergenceTermination condition;
+    private Checkpoint resumed;
+    private long last;
+
+    /**
+     * @param problem the problem being optimised
+     * @param file where checkpoints are written, and read from when resuming
+     * @param intervalMillis least time between two checkpoints
+     */
+    public Checkpointer(Checkpointable problem, Path file, long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("checkpoint interval must not be negative, was " + intervalMillis);
+        }
+        this.problem = problem;
+        this.writer = new CheckpointWriter(file);
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Loads the checkpoint file, if there is one yet, and restores the problem's state and the random number
+     *  generator from it
+     *
+     * @return the checkpoint resumed from, or null if there was none
+     * @throws IOException if the file cannot be read or belongs to another instance
+     */
+    public Checkpoint resume() throws IOException {
+        if (!Files.exists(writer.getFile())) {
+            return null;
+        }
+        Checkpoint checkpoint = Checkpoint.read(writer.getFile());
+        checkpoint.restoreProblem(problem);
+        checkpoint.restoreRandom();
+        resumed = checkpoint;
+        return checkpoint;
+    }
+
+    /**
+     * @param condition the run's stopping condition, whose progress is checkpointed along with the population and
+     *                  restored from the checkpoint when resuming
+     */
+    public void setCondition(ConvergenceTermination condition) throws IOException {
+        this.condition = condition;
+        if (resumed != null) {
+            resumed.restoreProgress(condition);
+        }
+    }
+
+    /**
+     * @return a factory that builds algorithms as MOEA's does, except that after resume() it builds a ResumableNSGAII
+     *  carrying on from the checkpointed population
+     */
+    public AlgorithmFactory newAlgorithmFactory() {
+        return new AlgorithmFactory() {
+            @Override
+            public synchronized Algorithm getAlgorithm(String name, Properties properties, Problem problem) {
+                if (resumed == null) {
+                    //the shared factory, which knows the providers Main added
+                    return AlgorithmFactory.getInstance().getAlgorithm(name, properties, problem);
+                }
+                ResumableNSGAII algorithm = new ResumableNSGAII(problem, new TypedProperties(properties),
+                        new RandomInitialization(problem, resumed.getPopulationSize()));
+                try {
+                    algorithm.resume(resumed.newPopulation(problem, Checkpointer.this.problem),
+                            resumed.getEvaluations());
+                } catch (IOException e) {
+                    throw new FrameworkException("cannot resume from " + writer.getFile(), e);
+                }
+                return algorithm;
+            }
+        };
+    }
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+        last = System.currentTimeMillis();
+    }
+
+    @Override
+    protected void onGeneration(Algorithm algorithm) {
+        long now = System.currentTimeMillis();
+        if (now - last >= intervalMillis) {
+            last = now;
+            try {
+                writer.submit(Checkpoint.capture((EvolutionaryAlgorithm) algorithm, problem, condition));
+            } catch (IOException e) {
+                throw new FrameworkException("cannot encode checkpoint", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of checkpoints written so far
+     */
+    public int getWritten() {
+        return writer.getWritten();
+    }
+
+    /**
+     * @return the last error writing a checkpoint, or null if there was none
+     */
+    public IOException getError() {
+        return writer.getError();
+    }
+
+    /**
+     * Waits for the last checkpoint to be written
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
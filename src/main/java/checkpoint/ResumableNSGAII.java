@@ -0,0 +1,77 @@
+package checkpoint;
+
+import org.moeaframework.algorithm.AlgorithmInitializationException;
+import org.moeaframework.algorithm.NSGAII;
+import org.moeaframework.core.Initialization;
+import org.moeaframework.core.NondominatedSortingPopulation;
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.Selection;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.comparator.ChainedComparator;
+import org.moeaframework.core.comparator.CrowdingComparator;
+import org.moeaframework.core.comparator.ParetoDominanceComparator;
+import org.moeaframework.core.operator.TournamentSelection;
+import org.moeaframework.core.spi.OperatorFactory;
+import org.moeaframework.util.TypedProperties;
+
+import java.util.List;
+
+/**
+ * NSGAII exactly as MOEA's AlgorithmFactory builds it, which can also carry on from a checkpointed population
+ *  instead of initialising a new one
+ *
+ * A resumed algorithm reports no evaluations until its first step(), like a fresh one, so termination conditions
+ *  skip the check before it.  That step then installs the population and evaluation count and goes straight on
+ *  with the generation that followed the checkpoint, so from there on every condition sees the same generations as
+ *  in the interrupted run.
+ */
+public class ResumableNSGAII extends NSGAII {
+
+    private List<Solution> resumed;
+    private int resumedEvaluations;
+
+    /**
+     * @param problem the problem to optimise
+     * @param properties the algorithm properties, read as MOEA reads them (withReplacement, operator settings)
+     * @param initialization makes the initial population unless the run is resumed
+     */
+    public ResumableNSGAII(Problem problem, TypedProperties properties, Initialization initialization) {
+        super(problem, new NondominatedSortingPopulation(), null, newSelection(properties),
+                OperatorFactory.getInstance().getVariation(null, properties, problem), initialization);
+    }
+
+    private static Selection newSelection(TypedProperties properties) {
+        if (!properties.getBoolean("withReplacement", true)) {
+            return null;
+        }
+        return new TournamentSelection(2, new ChainedComparator(new ParetoDominanceComparator(),
+                new CrowdingComparator()));
+    }
+
+    /**
+     * Makes the first step carry on from a checkpointed population rather than initialise a new one
+     *
+     * @param population the evaluated population, in order
+     * @param evaluations number of evaluations made to reach it
+     */
+    public void resume(List<Solution> population, int evaluations) {
+        if (isInitialized()) {
+            throw new AlgorithmInitializationException(this, "already initialized");
+        }
+        this.resumed = population;
+        this.resumedEvaluations = evaluations;
+    }
+
+    @Override
+    protected void initialize() {
+        if (resumed == null) {
+            super.initialize();
+            return;
+        }
+        initialized = true;
+        numberOfEvaluations = resumedEvaluations;
+        population.addAll(resumed);
+        resumed = null;
+        iterate();
+    }
+}
@@ -0,0 +1,367 @@
+package generator;
+
+import misc.Options;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes random DMFB instances (arch.in, ops.in, graphs.in, alpha.in) in the format misc.Parser reads, plus a
+ *  generator.info recording the settings, so the same instance can be regenerated from its seed
+ *
+ * usage: generator.InstanceGenerator [--rows=15] [--columns=19] [--inputs=10] [--outputs=4] [--sensors=2]
+ *            [--detectors=2] [--heaters=2] [--ops=9] [--mix=input:10,output:5,mix:40,split:10,merge:10,store:10,
+ *            sense:5,detect:5,heat:5] [--interference=0.0] [--comm=chain|tree|dag] [--alpha=0.3] [--seed=1] DIR
+ *
+ * Reservoirs sit on the chip's border, sensors, detectors and heaters on distinct cells inside it.  Operation types
+ *  are drawn with the given relative weights; inputs come first and outputs last, every other operation in
+ *  between.  Every pair of operations interferes with the given probability, except inputs (or outputs) sharing a
+ *  reservoir, which could never be placed apart.  The communication graph only has edges from lower to higher
+ *  operation IDs, with costs 1-9, shaped as
+ *   chain  each operation feeds the next
+ *   tree   each operation is fed by one random earlier operation
+ *   dag    each operation is fed by one to three random earlier operations
+ */
+public class InstanceGenerator {
+
+    public enum Shape {
+        CHAIN, TREE, DAG
+    }
+
+    //operation types, in the order of their type codes 1-9
+    private static final String[] TYPES = {"input", "output", "mix", "split", "merge", "store", "sense", "detect", "heat"};
+    private static final int MAX_FAN_IN = 3;
+
+    private int rows = 15;
+    private int columns = 19;
+    private int inputs = 10;
+    private int outputs = 4;
+    private int sensors = 2;
+    private int detectors = 2;
+    private int heaters = 2;
+    private int operations = 9;
+    private double[] weights = {10, 5, 40, 10, 10, 10, 5, 5, 5};
+    private double interference = 0.0;
+    private Shape shape = Shape.CHAIN;
+    private double alpha = 0.3;
+    private long seed = 1;
+
+    public static void main(String... args) throws IOException {
+        Options options = new Options(args);
+        if (options.getFiles().size() != 1) {
+            System.out.print("usage: generator.InstanceGenerator [options] DIR (see the class documentation)\n");
+            return;
+        }
+        InstanceGenerator generator = new InstanceGenerator();
+        generator.setGrid(options.getInt("rows", generator.rows), options.getInt("columns", generator.columns));
+        generator.setReservoirs(options.getInt("inputs", generator.inputs), options.getInt("outputs", generator.outputs));
+        generator.setResources(options.getInt("sensors", generator.sensors),
+                options.getInt("detectors", generator.detectors),
+                options.getInt("heaters", generator.heaters));
+        generator.setOperations(options.getInt("ops", generator.operations));
+        if (options.has("mix")) {
+            generator.setTypeWeights(parseWeights(options.get("mix", "")));
+        }
+        generator.setInterference(options.getDouble("interference", generator.interference));
+        generator.setShape(Shape.valueOf(options.get("comm", generator.shape.name()).toUpperCase()));
+        generator.setAlpha(options.getDouble("alpha", generator.alpha));
+        generator.setSeed(options.getLong("seed", generator.seed));
+
+        Path dir = Paths.get(options.getFiles().get(0));
+        generator.generate(dir);
+        System.out.print("Wrote " + generator + " to " + dir + "\n");
+    }
+
+    /**
+     * @param spec comma separated type:weight pairs; types left out get weight 0
+     */
+    static double[] parseWeights(String spec) {
+        double[] weights = new double[TYPES.length];
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            int type = typeCode(pair[0].trim());
+            if (pair.length != 2 || type < 0) {
+                throw new IllegalArgumentException("expected type:weight with a type out of " +
+                        Arrays.toString(TYPES) + ", got " + part);
+            }
+            weights[type] = Double.parseDouble(pair[1].trim());
+        }
+        return weights;
+    }
+
+    private static int typeCode(String name) {
+        for (int t = 0; t < TYPES.length; t++) {
+            if (TYPES[t].equalsIgnoreCase(name)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    public void setGrid(int rows, int columns) {
+        if (rows < 5 || columns < 5) {
+            throw new IllegalArgumentException("the chip must be at least 5x5, was " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public void setReservoirs(int inputs, int outputs) {
+        this.inputs = inputs;
+        this.outputs = outputs;
+    }
+
+    public void setResources(int sensors, int detectors, int heaters) {
+        this.sensors = sensors;
+        this.detectors = detectors;
+        this.heaters = heaters;
+    }
+
+    public void setOperations(int operations) {
+        if (operations < 1) {
+            throw new IllegalArgumentException("need at least one operation, was " + operations);
+        }
+        this.operations = operations;
+    }
+
+    /**
+     * @param weights relative weight of each operation type, indexed by type code - 1
+     */
+    public void setTypeWeights(double[] weights) {
+        if (weights.length != TYPES.length) {
+            throw new IllegalArgumentException("need " + TYPES.length + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * @param interference probability that a pair of operations interferes
+     */
+    public void setInterference(double interference) {
+        if (interference < 0 || interference > 1) {
+            throw new IllegalArgumentException("interference density must be within [0, 1], was " + interference);
+        }
+        this.interference = interference;
+    }
+
+    public void setShape(Shape shape) {
+        this.shape = shape;
+    }
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the instance files into dir, creating it if needed; the same settings always give the same files
+     */
+    public void generate(Path dir) throws IOException {
+        validate();
+        Random random = new Random(seed);
+        Charset utf8 = Charset.forName("UTF-8");
+        Files.createDirectories(dir);
+
+        Files.write(dir.resolve("arch.in"), architecture(random), utf8);
+        int[] types = operationTypes(random);
+        int[] reservoirs = new int[types.length];
+        Files.write(dir.resolve("ops.in"), operations(random, types, reservoirs), utf8);
+        Files.write(dir.resolve("graphs.in"), graphs(random, types, reservoirs), utf8);
+        Files.write(dir.resolve("alpha.in"), Collections.singletonList(String.valueOf(alpha)), utf8);
+        Files.write(dir.resolve("generator.info"), Collections.singletonList(toString()), utf8);
+    }
+
+    private void validate() {
+        int border = 2 * (rows + columns) - 8;
+        if (inputs < 0 || outputs < 0 || inputs + outputs > border) {
+            throw new IllegalArgumentException(inputs + " inputs and " + outputs + " outputs do not fit on the " +
+                    border + " border cells");
+        }
+        int interior = (rows - 2) * (columns - 2);
+        if (sensors < 0 || detectors < 0 || heaters < 0 || sensors + detectors + heaters > interior) {
+            throw new IllegalArgumentException("sensors, detectors and heaters do not fit on the " + interior +
+                    " interior cells");
+        }
+        double total = 0;
+        for (int t = 0; t < TYPES.length; t++) {
+            if (weights[t] < 0) {
+                throw new IllegalArgumentException("type weights must not be negative");
+            }
+            total += weights[t];
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("at least one operation type needs a positive weight");
+        }
+        for (int t : new int[]{0, 1, 6, 7, 8}) {
+            int available = (t == 0 ? inputs : t == 1 ? outputs : t == 6 ? sensors : t == 7 ? detectors : heaters);
+            if (weights[t] > 0 && available == 0) {
+                throw new IllegalArgumentException(TYPES[t] + " operations need at least one " +
+                        (t < 2 ? "reservoir" : "cell") + " for them on the chip");
+            }
+        }
+    }
+
+    private List<String> architecture(Random random) {
+        List<String> lines = new ArrayList<>();
+        lines.add(rows + "\t" + columns);
+        lines.add(inputs + "\t" + outputs);
+        lines.add(sensors + "\t" + detectors + "\t" + heaters);
+
+        //reservoirs: border cells, corners excluded, in random order
+        List<int[]> border = new ArrayList<>();
+        for (int x = 2; x < columns; x++) {
+            border.add(new int[]{x, 1});
+            border.add(new int[]{x, rows});
+        }
+        for (int y = 2; y < rows; y++) {
+            border.add(new int[]{1, y});
+            border.add(new int[]{columns, y});
+        }
+        Collections.shuffle(border, random);
+        for (int i = 0; i < inputs + outputs; i++) {
+            lines.add(border.get(i)[0] + "\t" + border.get(i)[1]);
+        }
+
+        //sensors, detectors, heaters: distinct cells inside the boundary
+        Set<Long> used = new HashSet<>();
+        for (int i = 0; i < sensors + detectors + heaters; i++) {
+            int x;
+            int y;
+            do {
+                x = 2 + random.nextInt(columns - 2);
+                y = 2 + random.nextInt(rows - 2);
+            } while (!used.add(((long) x << 32) | y));
+            lines.add(x + "\t" + y);
+        }
+        return lines;
+    }
+
+    /**
+     * @return type code (1-9) of every operation, inputs first and outputs last
+     */
+    private int[] operationTypes(Random random) {
+        double total = 0;
+        for (double w : weights) {
+            total += w;
+        }
+        List<Integer> inputOps = new ArrayList<>();
+        List<Integer> middle = new ArrayList<>();
+        List<Integer> outputOps = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            double r = random.nextDouble() * total;
+            int t = 0;
+            while (t < TYPES.length - 1 && (r -= weights[t]) >= 0) {
+                t++;
+            }
+            while (weights[t] == 0) {
+                t--;
+            }
+            (t == 0 ? inputOps : t == 1 ? outputOps : middle).add(t + 1);
+        }
+        int[] types = new int[operations];
+        int i = 0;
+        for (List<Integer> group : Arrays.asList(inputOps, middle, outputOps)) {
+            for (int type : group) {
+                types[i++] = type;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @param reservoirs receives the reservoir of every input and output operation
+     */
+    private List<String> operations(Random random, int[] types, int[] reservoirs) {
+        List<String> lines = new ArrayList<>(types.length + 1);
+        lines.add(String.valueOf(types.length));
+        for (int i = 0; i < types.length; i++) {
+            int type = types[i];
+            switch (type) {
+                case 1:
+                    reservoirs[i] = 1 + random.nextInt(inputs);
+                    lines.add(type + "\t" + reservoirs[i]);
+                    break;
+                case 2:
+                    reservoirs[i] = 1 + random.nextInt(outputs);
+                    lines.add(type + "\t" + reservoirs[i]);
+                    break;
+                case 3:
+                    lines.add(type + "\t" + (1 + random.nextInt(9)));
+                    break;
+                default:
+                    lines.add(String.valueOf(type));
+            }
+        }
+        return lines;
+    }
+
+    private List<String> graphs(Random random, int[] types, int[] reservoirs) {
+        List<String> interferenceEdges = new ArrayList<>();
+        for (int u = 1; u <= operations; u++) {
+            for (int v = u + 1; v <= operations; v++) {
+                //two inputs (or outputs) on the same reservoir can never be separated, so they never interfere
+                boolean sameReservoir = (types[u - 1] == types[v - 1] && reservoirs[u - 1] != 0 &&
+                        reservoirs[u - 1] == reservoirs[v - 1]);
+                if (random.nextDouble() < interference && !sameReservoir) {
+                    interferenceEdges.add(u + "\t" + v);
+                }
+            }
+        }
+
+        List<String> communicationEdges = new ArrayList<>();
+        for (int v = 2; v <= operations; v++) {
+            switch (shape) {
+                case CHAIN:
+                    communicationEdges.add((v - 1) + "\t" + v + "\t" + (1 + random.nextInt(9)));
+                    break;
+                case TREE:
+                    communicationEdges.add((1 + random.nextInt(v - 1)) + "\t" + v + "\t" + (1 + random.nextInt(9)));
+                    break;
+                case DAG:
+                    int fanIn = 1 + random.nextInt(Math.min(MAX_FAN_IN, v - 1));
+                    Set<Integer> sources = new HashSet<>();
+                    while (sources.size() < fanIn) {
+                        sources.add(1 + random.nextInt(v - 1));
+                    }
+                    for (int u : new TreeSet<>(sources)) {
+                        communicationEdges.add(u + "\t" + v + "\t" + (1 + random.nextInt(9)));
+                    }
+                    break;
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(operations + "\t" + interferenceEdges.size() + "\t" + communicationEdges.size());
+        lines.addAll(interferenceEdges);
+        lines.addAll(communicationEdges);
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (int t = 0; t < TYPES.length; t++) {
+            if (weights[t] > 0) {
+                mix.append(mix.length() == 0 ? "" : ",").append(TYPES[t]).append(":").append(weights[t]);
+            }
+        }
+        return "--rows=" + rows + " --columns=" + columns + " --inputs=" + inputs + " --outputs=" + outputs +
+                " --sensors=" + sensors + " --detectors=" + detectors + " --heaters=" + heaters +
+                " --ops=" + operations + " --mix=" + mix + " --interference=" + interference +
+                " --comm=" + shape.name().toLowerCase() + " --alpha=" + alpha + " --seed=" + seed;
+    }
+}
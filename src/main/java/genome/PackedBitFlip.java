@@ -0,0 +1,83 @@
+package genome;
+
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.Variable;
+import org.moeaframework.core.Variation;
+
+/**
+ * Bit flip mutation for {@link PackedGenome}
+ *
+ * Flips each bit independently with the given probability, same as MOEA's BitFlip, but instead of drawing one random
+ *  number per bit it jumps straight to the next flipped bit (geometric skip) and XORs it into the word.
+ */
+public class PackedBitFlip implements Variation {
+
+    private final double probability;
+
+    /**
+     * @param probability probability of flipping each bit
+     */
+    public PackedBitFlip(double probability) {
+        this.probability = probability;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public Solution[] evolve(Solution[] parents) {
+        Solution result = PackedGenomeOperators.copy(parents[0]);
+
+        for (int i = 0; i < result.getNumberOfVariables(); i++) {
+            Variable variable = result.getVariable(i);
+
+            if (variable instanceof PackedGenome) {
+                evolve((PackedGenome) variable, probability);
+            }
+        }
+
+        return new Solution[] { result };
+    }
+
+    /**
+     * Mutates the genome in place
+     *
+     * @param genome the genome to mutate
+     * @param probability probability of flipping each bit
+     */
+    public static void evolve(PackedGenome genome, double probability) {
+        if (probability <= 0.0) {
+            return;
+        }
+        int bits = genome.getNumberOfBits();
+        if (probability >= 1.0) {
+            for (int w = 0; w < genome.getNumberOfWords(); w++) {
+                genome.setWord(w, ~genome.getWord(w));
+            }
+            return;
+        }
+
+        double logq = Math.log(1.0 - probability);
+        long bit = skip(logq);
+        while (bit < bits) {
+            int w = genome.wordOfBit((int) bit);
+            genome.setWord(w, genome.getWord(w) ^ (1L << genome.offsetOfBit((int) bit)));
+            bit += 1 + skip(logq);
+        }
+    }
+
+    /**
+     * @return number of bits to pass over before the next flip, drawn from a geometric distribution
+     */
+    private static long skip(double logq) {
+        double u = 1.0 - PRNG.nextDouble(); // (0, 1]
+        return (long) Math.min(Math.floor(Math.log(u) / logq), Integer.MAX_VALUE);
+    }
+}
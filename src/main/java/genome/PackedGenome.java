@@ -0,0 +1,192 @@
+package genome;
+
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Variable;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-width field per operation, packed into a single long[]
+ *
+ * Fields never straddle a word boundary: each word holds floor(64 / bitsPerField) fields, so extracting a field is
+ *  one array load, one shift, and one mask.  Bits of a word that do not belong to any field are always zero, which
+ *  lets equals/hashCode work on the raw words.
+ */
+public class PackedGenome implements Variable {
+
+    private static final long serialVersionUID = 2471932468453829763L;
+
+    private final int numberOfFields;
+    private final int bitsPerField;
+    private final int fieldsPerWord;
+    private final long fieldMask;
+    private final long[] words;
+
+    /**
+     * @param numberOfFields number of fields (one per operation)
+     * @param bitsPerField width of each field in bits, at most 64
+     */
+    public PackedGenome(int numberOfFields, int bitsPerField) {
+        if (bitsPerField < 1 || bitsPerField > 64) {
+            throw new IllegalArgumentException("bits per field must be between 1 and 64, was " + bitsPerField);
+        }
+        this.numberOfFields = numberOfFields;
+        this.bitsPerField = bitsPerField;
+        this.fieldsPerWord = 64 / bitsPerField;
+        this.fieldMask = (bitsPerField == 64 ? -1L : (1L << bitsPerField) - 1);
+        this.words = new long[(numberOfFields + fieldsPerWord - 1) / fieldsPerWord];
+    }
+
+    private PackedGenome(PackedGenome other) {
+        this.numberOfFields = other.numberOfFields;
+        this.bitsPerField = other.bitsPerField;
+        this.fieldsPerWord = other.fieldsPerWord;
+        this.fieldMask = other.fieldMask;
+        this.words = other.words.clone();
+    }
+
+    public int getNumberOfFields() {
+        return numberOfFields;
+    }
+
+    public int getBitsPerField() {
+        return bitsPerField;
+    }
+
+    /**
+     * @return the number of bits that actually carry information (excludes the padding in each word)
+     */
+    public int getNumberOfBits() {
+        return numberOfFields * bitsPerField;
+    }
+
+    public int getFieldsPerWord() {
+        return fieldsPerWord;
+    }
+
+    public int getNumberOfWords() {
+        return words.length;
+    }
+
+    /**
+     * @param i field index
+     * @return the raw value of field i
+     */
+    public long getField(int i) {
+        return (words[i / fieldsPerWord] >>> ((i % fieldsPerWord) * bitsPerField)) & fieldMask;
+    }
+
+    /**
+     * @param i field index
+     * @param offset bit offset inside the field
+     * @param length number of bits to extract
+     * @return bits [offset, offset+length) of field i
+     */
+    public int getBits(int i, int offset, int length) {
+        return (int) ((getField(i) >>> offset) & ((1L << length) - 1));
+    }
+
+    public void setField(int i, long value) {
+        int shift = (i % fieldsPerWord) * bitsPerField;
+        int w = i / fieldsPerWord;
+        words[w] = (words[w] & ~(fieldMask << shift)) | ((value & fieldMask) << shift);
+    }
+
+    public long getWord(int w) {
+        return words[w];
+    }
+
+    /**
+     * Sets a whole word; padding bits outside the valid mask are discarded
+     */
+    public void setWord(int w, long value) {
+        words[w] = value & getValidMask(w);
+    }
+
+    /**
+     * @param w word index
+     * @return mask of the bits in word w that belong to a field
+     */
+    public long getValidMask(int w) {
+        int fields = Math.min(fieldsPerWord, numberOfFields - w * fieldsPerWord);
+        int bits = fields * bitsPerField;
+        return (bits == 64 ? -1L : (1L << bits) - 1);
+    }
+
+    /**
+     * Maps a logical bit index in [0, getNumberOfBits()) to its word index
+     */
+    public int wordOfBit(int bit) {
+        return (bit / bitsPerField) / fieldsPerWord;
+    }
+
+    /**
+     * Maps a logical bit index in [0, getNumberOfBits()) to its position inside its word
+     */
+    public int offsetOfBit(int bit) {
+        return ((bit / bitsPerField) % fieldsPerWord) * bitsPerField + bit % bitsPerField;
+    }
+
+    /**
+     * @param other a genome with the same layout
+     * @return true if field i holds the same value in both genomes
+     */
+    public boolean fieldEquals(PackedGenome other, int i) {
+        int shift = (i % fieldsPerWord) * bitsPerField;
+        int w = i / fieldsPerWord;
+        return ((words[w] ^ other.words[w]) & (fieldMask << shift)) == 0;
+    }
+
+    /**
+     * @return a 64-bit hash of the genome's contents, stable across runs and JVMs
+     */
+    public long longHashCode() {
+        long h = 0x9E3779B97F4A7C15L ^ numberOfFields;
+        for (long word : words) {
+            h = (h ^ word) * 0xBF58476D1CE4E5B9L;
+            h ^= (h >>> 31);
+        }
+        return h;
+    }
+
+    @Override
+    public PackedGenome copy() {
+        return new PackedGenome(this);
+    }
+
+    @Override
+    public void randomize() {
+        for (int w = 0; w < words.length; w++) {
+            words[w] = PRNG.getRandom().nextLong() & getValidMask(w);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PackedGenome)) return false;
+        PackedGenome other = (PackedGenome) o;
+        return this.bitsPerField == other.bitsPerField &&
+                this.numberOfFields == other.numberOfFields &&
+                Arrays.equals(this.words, other.words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numberOfFields; i++) {
+            long field = getField(i);
+            for (int b = 0; b < bitsPerField; b++) {
+                sb.append(((field >>> b) & 1) == 1 ? '1' : '0');
+            }
+            if (i < numberOfFields - 1) {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
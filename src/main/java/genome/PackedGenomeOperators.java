@@ -0,0 +1,66 @@
+package genome;
+
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.Variation;
+import org.moeaframework.core.spi.OperatorProvider;
+import org.moeaframework.util.TypedProperties;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Makes the {@link PackedGenome} operators available to MOEA's OperatorFactory (registered through
+ *  META-INF/services), so "NSGAII" picks them automatically for problems encoded with a PackedGenome
+ *
+ *  pux: uniform crossover, property pux.rate (default 1.0)
+ *  pbf: bit flip mutation, property pbf.rate (default 0.01)
+ */
+public class PackedGenomeOperators extends OperatorProvider {
+
+    @Override
+    public String getMutationHint(Problem problem) {
+        return (isPacked(problem) ? "pbf" : null);
+    }
+
+    @Override
+    public String getVariationHint(Problem problem) {
+        return (isPacked(problem) ? "pux+pbf" : null);
+    }
+
+    @Override
+    public Variation getVariation(String name, Properties properties, Problem problem) {
+        TypedProperties typedProperties = new TypedProperties(properties);
+
+        if (name.equalsIgnoreCase("pux")) {
+            return new PackedUniformCrossover(typedProperties.getDouble("pux.rate", 1.0));
+        }
+        else if (name.equalsIgnoreCase("pbf")) {
+            return new PackedBitFlip(typedProperties.getDouble("pbf.rate", 0.01));
+        }
+        return null;
+    }
+
+    /**
+     * Copies a parent for variation.  Unlike Solution.copy(), the copy keeps the parent's attributes, which lets the
+     *  problem evaluate the child incrementally against what it recorded for the parent.
+     */
+    static Solution copy(Solution parent) {
+        Solution child = parent.copy();
+        for (Map.Entry<String, Serializable> attribute : parent.getAttributes().entrySet()) {
+            child.setAttribute(attribute.getKey(), attribute.getValue());
+        }
+        return child;
+    }
+
+    private static boolean isPacked(Problem problem) {
+        Solution solution = problem.newSolution();
+        for (int i = 0; i < solution.getNumberOfVariables(); i++) {
+            if (!(solution.getVariable(i) instanceof PackedGenome)) {
+                return false;
+            }
+        }
+        return solution.getNumberOfVariables() > 0;
+    }
+}
@@ -0,0 +1,67 @@
+package genome;
+
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.Variable;
+import org.moeaframework.core.Variation;
+
+/**
+ * Uniform crossover for {@link PackedGenome}
+ *
+ * Each bit is taken from either parent with equal probability, 64 bits at a time: one random mask per word picks
+ *  which bits get swapped.  In expectation this swaps half of the differing bits, like HUX, without counting them.
+ */
+public class PackedUniformCrossover implements Variation {
+
+    private final double probability;
+
+    /**
+     * @param probability probability of applying crossover to a pair of parents
+     */
+    public PackedUniformCrossover(double probability) {
+        this.probability = probability;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public int getArity() {
+        return 2;
+    }
+
+    @Override
+    public Solution[] evolve(Solution[] parents) {
+        Solution result1 = PackedGenomeOperators.copy(parents[0]);
+        Solution result2 = PackedGenomeOperators.copy(parents[1]);
+
+        if (PRNG.nextDouble() <= probability) {
+            for (int i = 0; i < result1.getNumberOfVariables(); i++) {
+                Variable variable1 = result1.getVariable(i);
+                Variable variable2 = result2.getVariable(i);
+
+                if (variable1 instanceof PackedGenome && variable2 instanceof PackedGenome) {
+                    evolve((PackedGenome) variable1, (PackedGenome) variable2);
+                }
+            }
+        }
+
+        return new Solution[] { result1, result2 };
+    }
+
+    /**
+     * Crosses the two genomes in place
+     */
+    public static void evolve(PackedGenome g1, PackedGenome g2) {
+        for (int w = 0; w < g1.getNumberOfWords(); w++) {
+            long a = g1.getWord(w);
+            long b = g2.getWord(w);
+            long swap = (a ^ b) & PRNG.getRandom().nextLong();
+            if (swap != 0) {
+                g1.setWord(w, a ^ swap);
+                g2.setWord(w, b ^ swap);
+            }
+        }
+    }
+}
@@ -2,31 +2,162 @@ package graph;
 
 import operation.Operation;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Tyson Loveless
  *
+ * Besides the vertex and edge lists, the constructor compiles the graph into primitive arrays, with vertices indexed
+ *  by operation ID-1:
+ *   - edge e as (getEdgeU(e), getEdgeV(e), getEdgeCost(e)), in the order the edges were given, for sequential scans
+ *   - a symmetric compressed-sparse-row adjacency, where every edge is listed at both of its endpoints: the
+ *     neighbours of v are at positions getOffset(v) .. getOffset(v+1)-1, so per-vertex queries are O(degree)
+ *
+ * A graph loaded from a compiled instance is given those arrays directly, and only builds its edge list if asked for.
  */
 public class Graph {
     private List<Operation> vertices;
     private List<Edge<Operation, Operation>> edges;
 
+    private final int[] edgeU;
+    private final int[] edgeV;
+    private final int[] edgeCost;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int[] adjacentEdges;
+
     public Graph(List<Operation> vertices,
                  List<Edge<Operation, Operation>> edges) {
         this.vertices = vertices;
         this.edges = edges;
+
+        int n = vertices.size();
+        int m = edges.size();
+        this.edgeU = new int[m];
+        this.edgeV = new int[m];
+        this.edgeCost = new int[m];
+        this.offsets = new int[n + 1];
+        int e = 0;
+        for (Edge<Operation, Operation> edge : edges) {
+            edgeU[e] = edge.getU().getID() - 1;
+            edgeV[e] = edge.getV().getID() - 1;
+            edgeCost[e] = edge.getCost();
+            offsets[edgeU[e] + 1]++;
+            if (edgeV[e] != edgeU[e]) {
+                offsets[edgeV[e] + 1]++;
+            }
+            e++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        this.neighbours = new int[offsets[n]];
+        this.adjacentEdges = new int[offsets[n]];
+        int[] next = new int[n];
+        System.arraycopy(offsets, 0, next, 0, n);
+        for (e = 0; e < m; e++) {
+            int k = next[edgeU[e]]++;
+            neighbours[k] = edgeV[e];
+            adjacentEdges[k] = e;
+            if (edgeV[e] != edgeU[e]) {
+                k = next[edgeV[e]]++;
+                neighbours[k] = edgeU[e];
+                adjacentEdges[k] = e;
+            }
+        }
+    }
+
+    /**
+     * Wraps an already compiled graph; the arrays are as returned by the getters of the same names, and are not copied
+     */
+    public Graph(List<Operation> vertices, int[] edgeU, int[] edgeV, int[] edgeCost, int[] offsets, int[] neighbours,
+                 int[] adjacentEdges) {
+        if (offsets.length != vertices.size() + 1 || edgeV.length != edgeU.length || edgeCost.length != edgeU.length ||
+                neighbours.length != offsets[vertices.size()] || adjacentEdges.length != neighbours.length) {
+            throw new IllegalArgumentException("compiled graph arrays do not match in size");
+        }
+        this.vertices = vertices;
+        this.edgeU = edgeU;
+        this.edgeV = edgeV;
+        this.edgeCost = edgeCost;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.adjacentEdges = adjacentEdges;
     }
 
     public List<Operation> getVertices() {
         return vertices;
     }
 
-    public List<Edge<Operation, Operation>> getEdges() {
+    public synchronized List<Edge<Operation, Operation>> getEdges() {
+        if (edges == null) {
+            edges = new ArrayList<Edge<Operation, Operation>>(edgeU.length);
+            for (int e = 0; e < edgeU.length; e++) {
+                Operation u = vertices.get(edgeU[e]);
+                Operation v = vertices.get(edgeV[e]);
+                edges.add(edgeCost[e] < 0 ? new Edge<Operation, Operation>(u, v) : new Edge<Operation, Operation>(u, v, edgeCost[e]));
+            }
+        }
         return edges;
     }
 
+    public int getNumberOfVertices() {
+        return offsets.length - 1;
+    }
+
+    public int getNumberOfEdges() {
+        return edgeU.length;
+    }
+
+    /**
+     * @return index (ID-1) of the first endpoint of edge e
+     */
+    public int getEdgeU(int e) {
+        return edgeU[e];
+    }
+
+    /**
+     * @return index (ID-1) of the second endpoint of edge e
+     */
+    public int getEdgeV(int e) {
+        return edgeV[e];
+    }
+
+    /**
+     * @return cost of edge e, -1 for unweighted edges
+     */
+    public int getEdgeCost(int e) {
+        return edgeCost[e];
+    }
+
+    /**
+     * @return start of vertex v's entries in the adjacency; they end at getOffset(v+1)
+     */
+    public int getOffset(int v) {
+        return offsets[v];
+    }
+
+    public int getDegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * @param k position in the adjacency
+     * @return the vertex at the other end of the k-th adjacency entry
+     */
+    public int getNeighbour(int k) {
+        return neighbours[k];
+    }
+
+    /**
+     * @param k position in the adjacency
+     * @return the edge index of the k-th adjacency entry
+     */
+    public int getAdjacentEdge(int k) {
+        return adjacentEdges[k];
+    }
+
 
     @Override
     public String toString() {
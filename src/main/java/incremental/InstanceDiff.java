@@ -0,0 +1,225 @@
+package incremental;
+
+import graph.Graph;
+import misc.Architecture;
+import misc.Instance;
+import misc.Phenotype;
+import operation.Input;
+import operation.Mix;
+import operation.Operation;
+import operation.Output;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What an edit to an assay leaves alone: which operations of the new instance are the same as ones of the old
+ *  instance, and which of those can keep their old positions
+ *
+ * Operations are matched by position in the operation lists: the longest common prefix and suffix of operations
+ *  with the same type, reservoir, and importance, and if what remains in between is as long in both lists, the
+ *  operations there of the same type, one to one.  Adding or removing a run of operations, or editing any number of
+ *  them in place, therefore keeps every other operation matched.  A matched operation is affected if its reservoir
+ *  or importance changed, or if the edges it has in the interference or communication graph, mapped onto the new
+ *  IDs, are not exactly the same; an unmatched operation is always affected.  The affected operations and their
+ *  communication graph neighbours are free to move, and every other operation is pinned where it was.  Nothing is
+ *  pinned if the architecture changed (the old positions mean nothing on a different chip), nor if alpha changed
+ *  (the whole trade-off moves), though in the latter case the old positions are still worth starting from.
+ */
+public class InstanceDiff {
+
+    private final Instance current;
+    //per operation of the current instance, the index (ID-1) of the matching previous operation, or -1
+    private final int[] match;
+    private final boolean[] affected;
+    private final boolean[] pinned;
+    private final boolean sameArchitecture;
+    private final boolean sameAlpha;
+    private int numberOfAffected;
+    private int numberOfPinned;
+
+    /**
+     * @param previous the instance the old placement was made for
+     * @param current the edited instance
+     */
+    public InstanceDiff(Instance previous, Instance current) {
+        this.current = current;
+        List<Operation> before = previous.getOperations();
+        List<Operation> after = current.getOperations();
+        int n = after.size();
+        this.match = new int[n];
+        this.affected = new boolean[n];
+        this.pinned = new boolean[n];
+        this.sameArchitecture = sameArchitecture(previous.getArch(), current.getArch());
+        this.sameAlpha = (previous.getAlpha() == current.getAlpha());
+
+        //common prefix and suffix, then the middle one to one if it kept its length
+        Arrays.fill(match, -1);
+        int prefix = 0;
+        while (prefix < n && prefix < before.size() && same(after.get(prefix), before.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < before.size() - prefix &&
+                same(after.get(n - 1 - suffix), before.get(before.size() - 1 - suffix))) {
+            suffix++;
+        }
+        boolean sameLength = (n == before.size());
+        for (int i = 0; i < n; i++) {
+            int j = (i < prefix ? i : i >= n - suffix ? i - n + before.size() : sameLength ? i : -1);
+            if (j >= 0 && after.get(i).getType() == before.get(j).getType()) {
+                match[i] = j;
+            }
+        }
+
+        //per previous operation the current one it matches, to rename the previous graphs' neighbours with
+        int[] inverse = new int[before.size()];
+        Arrays.fill(inverse, -1);
+        for (int i = 0; i < n; i++) {
+            if (match[i] >= 0) {
+                inverse[match[i]] = i;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            affected[i] = (match[i] < 0 || !sameAttributes(after.get(i), before.get(match[i])) ||
+                    !sameNeighbourhood(current.getInterferenceGraph(), previous.getInterferenceGraph(), i, match[i], inverse) ||
+                    !sameNeighbourhood(current.getCommunicationGraph(), previous.getCommunicationGraph(), i, match[i], inverse));
+            if (affected[i]) {
+                numberOfAffected++;
+            }
+        }
+
+        //the affected operations and their communication graph neighbours move, everything else stays
+        boolean[] free = affected.clone();
+        Graph CG = current.getCommunicationGraph();
+        for (int i = 0; i < n; i++) {
+            if (affected[i]) {
+                for (int a = CG.getOffset(i); a < CG.getOffset(i + 1); a++) {
+                    free[CG.getNeighbour(a)] = true;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            int type = after.get(i).getType();
+            pinned[i] = (sameArchitecture && sameAlpha && !free[i] && type != 1 && type != 2);
+            if (pinned[i]) {
+                numberOfPinned++;
+            }
+        }
+    }
+
+    private static boolean sameArchitecture(Architecture a, Architecture b) {
+        return a.getRows() == b.getRows() && a.getColumns() == b.getColumns() &&
+                a.getInputs().equals(b.getInputs()) && a.getOutputs().equals(b.getOutputs()) &&
+                a.getSensors().equals(b.getSensors()) && a.getDetectors().equals(b.getDetectors()) &&
+                a.getHeaters().equals(b.getHeaters());
+    }
+
+    private static boolean same(Operation a, Operation b) {
+        return a.getType() == b.getType() && sameAttributes(a, b);
+    }
+
+    /**
+     * @return true if a and b, of the same type, have the same reservoir or importance if they have one
+     */
+    private static boolean sameAttributes(Operation a, Operation b) {
+        if (a instanceof Input) {
+            return ((Input) a).getReservoir() == ((Input) b).getReservoir();
+        }
+        if (a instanceof Output) {
+            return ((Output) a).getReservoir() == ((Output) b).getReservoir();
+        }
+        if (a instanceof Mix) {
+            return ((Mix) a).getImportance() == ((Mix) b).getImportance();
+        }
+        return true;
+    }
+
+    /**
+     * @param inverse per previous operation, the current operation it matches, or -1
+     * @return true if operation i of the current graph has the same edges, with the same costs, as operation j of
+     *         the previous graph once its neighbours are renamed to their current IDs
+     */
+    private static boolean sameNeighbourhood(Graph current, Graph previous, int i, int j, int[] inverse) {
+        int degree = current.getDegree(i);
+        if (degree != previous.getDegree(j)) {
+            return false;
+        }
+        long[] edges = new long[degree];
+        long[] old = new long[degree];
+        for (int k = 0; k < degree; k++) {
+            int a = current.getOffset(i) + k;
+            edges[k] = edgeKey(current.getNeighbour(a), current.getEdgeCost(current.getAdjacentEdge(a)));
+            int b = previous.getOffset(j) + k;
+            int neighbour = inverse[previous.getNeighbour(b)];
+            if (neighbour < 0) {
+                return false;
+            }
+            old[k] = edgeKey(neighbour, previous.getEdgeCost(previous.getAdjacentEdge(b)));
+        }
+        Arrays.sort(edges);
+        Arrays.sort(old);
+        return Arrays.equals(edges, old);
+    }
+
+    private static long edgeKey(int neighbour, int cost) {
+        return ((long) neighbour << 32) | (cost & 0xffffffffL);
+    }
+
+    /**
+     * Carries a placement of the previous instance over to the current one
+     *
+     * @param placement a placement of the previous instance
+     * @param known receives, per current operation, whether it has a position in the result: false for inputs and
+     *              outputs (their reservoirs place them), for operations with no match, and for everything if the
+     *              architecture changed
+     * @return the placement renumbered to the current operations; positions not known are left at 0
+     */
+    public Phenotype carryOver(Phenotype placement, boolean[] known) {
+        int n = match.length;
+        Phenotype sol = new Phenotype(n);
+        List<Operation> after = current.getOperations();
+        for (int i = 0; i < n; i++) {
+            int type = after.get(i).getType();
+            int j = match[i];
+            known[i] = (sameArchitecture && j >= 0 && type != 1 && type != 2);
+            sol.sizeCode[i] = -1;
+            if (known[i]) {
+                sol.x[i] = placement.x[j];
+                sol.y[i] = placement.y[j];
+                sol.height[i] = placement.height[j];
+                sol.width[i] = placement.width[j];
+                sol.orientation[i] = placement.orientation[j];
+                sol.sizeCode[i] = placement.sizeCode[j];
+            }
+        }
+        return sol;
+    }
+
+    /**
+     * @return per operation of the current instance, whether it keeps its old position
+     */
+    public boolean[] getPinned() {
+        return pinned;
+    }
+
+    public boolean isAffected(int i) {
+        return affected[i];
+    }
+
+    public int getNumberOfAffected() {
+        return numberOfAffected;
+    }
+
+    public int getNumberOfPinned() {
+        return numberOfPinned;
+    }
+
+    public boolean isSameArchitecture() {
+        return sameArchitecture;
+    }
+
+    public boolean isSameAlpha() {
+        return sameAlpha;
+    }
+}
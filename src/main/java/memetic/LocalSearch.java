@@ -0,0 +1,286 @@
+package memetic;
+
+import graph.Graph;
+import misc.Architecture;
+import misc.FeasibilityRepair;
+import misc.Phenotype;
+
+/**
+ * Hill-climbs a feasible placement with cheap moves, keeping it feasible
+ *
+ * Every pass visits each operation that is not an input or output and tries, in turn:
+ *   - moving it: one cell at a time in each direction, sliding on while that keeps improving, or for a sense, detect,
+ *     or heat operation, to each of the other cells with its capability
+ *   - swapping it with another operation of the same footprint and capability
+ *   - for a mix, every other size and orientation
+ * A move is scored by recomputing only the communication edges that touch the operations it moves (and, for a mix,
+ *  its own T_mix term), and checked against only the constraints on those operations.  The best improving move is
+ *  kept, and passes repeat until one improves nothing or the deadline passes.
+ *
+ * With one objective a move improves if it lowers alpha*D_comm + (1-alpha)*T_mix; with two it must lower one of
+ *  D_comm and T_mix without raising the other.
+ *
+ * The search itself is immutable and can be shared between threads.
+ */
+public class LocalSearch {
+
+    private static final double EPSILON = 1e-9;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    private final Architecture architecture;
+    private final Graph communicationGraph;
+    private final FeasibilityRepair repair;
+    private final int[] types;
+    private final int[] capability;
+    private final double[] importance;
+    private final int[] mixLatency;
+    private final int[] mixHeight;
+    private final int[] mixWidth;
+    private final int selectionLimit;
+
+    /**
+     * @param arch the architecture placements are made on
+     * @param CG the communication graph
+     * @param repair decides which positions are legal
+     * @param types operation type, indexed by ID-1
+     * @param capability Architecture capability each operation must be placed on, 0 for none, indexed by ID-1
+     * @param importance importance of each mix, indexed by ID-1
+     * @param mixLatency mix latency indexed by mix size code
+     * @param mixHeight mix height (unrotated) indexed by mix size code
+     * @param mixWidth mix width (unrotated) indexed by mix size code
+     * @param selectionLimit number of capability cells the genome can address
+     */
+    public LocalSearch(Architecture arch, Graph CG, FeasibilityRepair repair, int[] types, int[] capability,
+                       double[] importance, int[] mixLatency, int[] mixHeight, int[] mixWidth, int selectionLimit) {
+        this.architecture = arch;
+        this.communicationGraph = CG;
+        this.repair = repair;
+        this.types = types;
+        this.capability = capability;
+        this.importance = importance;
+        this.mixLatency = mixLatency;
+        this.mixHeight = mixHeight;
+        this.mixWidth = mixWidth;
+        this.selectionLimit = selectionLimit;
+    }
+
+    /**
+     * Improves a feasible placement in place, keeping D_comm, T_mix, and Obj up to date
+     *
+     * @param sol a feasible placement with its objective values
+     * @param alpha weight of D_comm in the single objective
+     * @param biObjective whether D_comm and T_mix are separate objectives
+     * @param deadline System.nanoTime() by which to stop
+     * @return true if the placement was improved
+     */
+    public boolean refine(Phenotype sol, double alpha, boolean biObjective, long deadline) {
+        Move move = new Move(alpha, biObjective);
+        boolean improved = false;
+        boolean pass = true;
+        search:
+        while (pass) {
+            pass = false;
+            for (int i = 0; i < types.length; i++) {
+                if (repair.isFixed(i)) {
+                    continue;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    break search;
+                }
+                boolean moved = (capability[i] != 0 ? moveToCapability(sol, i, move) : slide(sol, i, move));
+                moved |= swap(sol, i, move);
+                if (types[i] == 3) {
+                    moved |= reshape(sol, i, move);
+                }
+                pass |= moved;
+                improved |= moved;
+            }
+        }
+        sol.Obj = alpha*sol.D_comm + (1-alpha)*sol.T_mix;
+        return improved;
+    }
+
+    /**
+     * Tries single-cell steps in every direction and keeps going in the best one while it improves
+     */
+    private boolean slide(Phenotype sol, int i, Move move) {
+        int best = -1;
+        double bestDelta = 0;
+        for (int d = 0; d < DX.length; d++) {
+            double delta = relocationDelta(sol, i, sol.x[i] + DX[d], sol.y[i] + DY[d]);
+            if (!Double.isNaN(delta) && move.improves(delta, 0) && (best < 0 || delta < bestDelta)) {
+                best = d;
+                bestDelta = delta;
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        do {
+            sol.x[i] += DX[best];
+            sol.y[i] += DY[best];
+            sol.D_comm += bestDelta;
+            bestDelta = relocationDelta(sol, i, sol.x[i] + DX[best], sol.y[i] + DY[best]);
+        } while (!Double.isNaN(bestDelta) && move.improves(bestDelta, 0));
+        return true;
+    }
+
+    private boolean moveToCapability(Phenotype sol, int i, Move move) {
+        int count = Math.min(selectionLimit, architecture.getCount(capability[i]));
+        int best = -1;
+        double bestDelta = 0;
+        for (int k = 0; k < count; k++) {
+            int x = architecture.getX(capability[i], k);
+            int y = architecture.getY(capability[i], k);
+            if (x == sol.x[i] && y == sol.y[i]) {
+                continue;
+            }
+            double delta = relocationDelta(sol, i, x, y);
+            if (!Double.isNaN(delta) && move.improves(delta, 0) && (best < 0 || delta < bestDelta)) {
+                best = k;
+                bestDelta = delta;
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        sol.x[i] = architecture.getX(capability[i], best);
+        sol.y[i] = architecture.getY(capability[i], best);
+        sol.D_comm += bestDelta;
+        return true;
+    }
+
+    /**
+     * @return the change in D_comm from moving operation i to (x, y), or NaN if it would not be legal there
+     */
+    private double relocationDelta(Phenotype sol, int i, int x, int y) {
+        int oldX = sol.x[i];
+        int oldY = sol.y[i];
+        double before = localCost(sol, i);
+        sol.x[i] = x;
+        sol.y[i] = y;
+        double delta = (repair.isLegal(sol, i) ? localCost(sol, i) - before : Double.NaN);
+        sol.x[i] = oldX;
+        sol.y[i] = oldY;
+        return delta;
+    }
+
+    /**
+     * Swaps operation i with the other operation of the same footprint and capability that gains the most
+     */
+    private boolean swap(Phenotype sol, int i, Move move) {
+        int best = -1;
+        double bestDelta = 0;
+        for (int j = 0; j < types.length; j++) {
+            if (j == i || repair.isFixed(j) || capability[j] != capability[i] ||
+                    sol.width[j] != sol.width[i] || sol.height[j] != sol.height[i] ||
+                    (sol.x[j] == sol.x[i] && sol.y[j] == sol.y[i])) {
+                continue;
+            }
+            double before = localCost(sol, i) + localCost(sol, j);
+            exchange(sol, i, j);
+            if (repair.isLegal(sol, i) && repair.isLegal(sol, j)) {
+                //an edge between i and j is counted twice on both sides, and its length does not change
+                double delta = localCost(sol, i) + localCost(sol, j) - before;
+                if (move.improves(delta, 0) && (best < 0 || delta < bestDelta)) {
+                    best = j;
+                    bestDelta = delta;
+                }
+            }
+            exchange(sol, i, j);
+        }
+        if (best < 0) {
+            return false;
+        }
+        exchange(sol, i, best);
+        sol.D_comm += bestDelta;
+        return true;
+    }
+
+    private static void exchange(Phenotype sol, int i, int j) {
+        int x = sol.x[i];
+        int y = sol.y[i];
+        sol.x[i] = sol.x[j];
+        sol.y[i] = sol.y[j];
+        sol.x[j] = x;
+        sol.y[j] = y;
+    }
+
+    /**
+     * Tries every other size and orientation of mix i at its current anchor
+     */
+    private boolean reshape(Phenotype sol, int i, Move move) {
+        int oldCode = sol.sizeCode[i];
+        int oldOrientation = sol.orientation[i];
+        int bestCode = oldCode;
+        int bestOrientation = oldOrientation;
+        double bestDelta = 0;
+        for (int code = 0; code < mixLatency.length; code++) {
+            //T_mix holds the negated sum of importance*(10-latency)
+            double delta = importance[i] * (mixLatency[code] - mixLatency[oldCode]);
+            for (int orientation = 0; orientation < 2; orientation++) {
+                if (code == oldCode && orientation == oldOrientation) {
+                    continue;
+                }
+                shape(sol, i, code, orientation);
+                if (repair.isLegal(sol, i) && move.improves(0, delta) &&
+                        (bestCode == oldCode && bestOrientation == oldOrientation || delta < bestDelta)) {
+                    bestCode = code;
+                    bestOrientation = orientation;
+                    bestDelta = delta;
+                }
+            }
+        }
+        shape(sol, i, bestCode, bestOrientation);
+        if (bestCode == oldCode && bestOrientation == oldOrientation) {
+            return false;
+        }
+        sol.T_mix += bestDelta;
+        return true;
+    }
+
+    private void shape(Phenotype sol, int i, int code, int orientation) {
+        sol.sizeCode[i] = code;
+        sol.orientation[i] = orientation;
+        sol.height[i] = (orientation == 0 ? mixHeight[code] : mixWidth[code]);
+        sol.width[i] = (orientation == 0 ? mixWidth[code] : mixHeight[code]);
+    }
+
+    /**
+     * @return the communication cost of the edges touching operation i
+     */
+    private double localCost(Phenotype sol, int i) {
+        double sum = 0.0;
+        for (int a = communicationGraph.getOffset(i); a < communicationGraph.getOffset(i+1); a++) {
+            int v = communicationGraph.getNeighbour(a);
+            int cost = communicationGraph.getEdgeCost(communicationGraph.getAdjacentEdge(a));
+            sum += cost * (Math.abs(sol.x[i] - sol.x[v]) + Math.abs(sol.y[i] - sol.y[v]));
+        }
+        return sum;
+    }
+
+    /**
+     * The acceptance rule for one refine() call
+     */
+    private static class Move {
+        final double alpha;
+        final boolean biObjective;
+
+        Move(double alpha, boolean biObjective) {
+            this.alpha = alpha;
+            this.biObjective = biObjective;
+        }
+
+        /**
+         * @param dComm change in D_comm
+         * @param dMix change in T_mix
+         */
+        boolean improves(double dComm, double dMix) {
+            if (biObjective) {
+                return dComm <= EPSILON && dMix <= EPSILON && (dComm < -EPSILON || dMix < -EPSILON);
+            }
+            return alpha*dComm + (1-alpha)*dMix < -EPSILON;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package metrics;
+
+/**
+ * Running totals a problem keeps about its evaluations, read by MetricsRecorder once per generation
+ */
+public interface EvaluationStatistics {
+
+    /**
+     * @return number of evaluations so far
+     */
+    long getNumberOfEvaluations();
+
+    /**
+     * @return nanoseconds spent decoding genomes and computing objectives so far, 0 unless timing is enabled
+     */
+    long getDecodeNanos();
+
+    /**
+     * @return nanoseconds spent checking constraints so far, 0 unless timing is enabled
+     */
+    long getConstraintNanos();
+
+    /**
+     * @return number of placements currently in the archive
+     */
+    int getArchiveSize();
+}
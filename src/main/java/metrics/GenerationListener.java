@@ -0,0 +1,31 @@
+package metrics;
+
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.TerminationCondition;
+
+/**
+ * Something done once per generation of a run
+ *
+ * MOEA calls a termination condition once per generation, so a listener is one that never fires; add it next to
+ *  the real stopping condition.  The first call comes before the initial population is evaluated and is not passed
+ *  on, so onGeneration() sees every generation, the initial one included, exactly once.
+ */
+public abstract class GenerationListener implements TerminationCondition {
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+    }
+
+    @Override
+    public final boolean shouldTerminate(Algorithm algorithm) {
+        if (algorithm.getNumberOfEvaluations() > 0) {
+            onGeneration(algorithm);
+        }
+        return false;
+    }
+
+    /**
+     * Called after each generation of the run
+     */
+    protected abstract void onGeneration(Algorithm algorithm);
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.EvolutionaryAlgorithm;
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+
+import java.util.Arrays;
+
+/**
+ * Writes one record per generation of a run
+ *
+ * A record holds:
+ *   run, generation, elapsed seconds, evaluations, evaluations per second (over the last generation), decode and
+ *   constraint-checking time in milliseconds (over the last generation), feasible fraction of the population, best
+ *   and median feasible value of the first objective, and archive size
+ */
+public class MetricsRecorder extends GenerationListener {
+
+    public static final String[] COLUMNS = {"run", "generation", "seconds", "evaluations", "evals_per_sec",
+            "decode_ms", "constraint_ms", "feasible_fraction", "best_objective", "median_objective", "archive_size"};
+
+    private final MetricsWriter writer;
+    private final EvaluationStatistics statistics;
+    private final String label;
+
+    private long start;
+    private long lastTime;
+    private long lastEvaluations;
+    private long lastDecode;
+    private long lastConstraint;
+    private int generation;
+    private double[] values = new double[0];
+
+    /**
+     * @param writer where records go, opened with COLUMNS
+     * @param statistics the problem being optimised
+     * @param label identifies this run in the records
+     */
+    public MetricsRecorder(MetricsWriter writer, EvaluationStatistics statistics, String label) {
+        this.writer = writer;
+        this.statistics = statistics;
+        this.label = label;
+    }
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+        start = System.nanoTime();
+        lastTime = start;
+        lastEvaluations = statistics.getNumberOfEvaluations();
+        lastDecode = statistics.getDecodeNanos();
+        lastConstraint = statistics.getConstraintNanos();
+        generation = 0;
+    }
+
+    @Override
+    protected void onGeneration(Algorithm algorithm) {
+        long now = System.nanoTime();
+        long evaluations = statistics.getNumberOfEvaluations();
+        long decode = statistics.getDecodeNanos();
+        long constraint = statistics.getConstraintNanos();
+
+        Population population = (algorithm instanceof EvolutionaryAlgorithm ?
+                ((EvolutionaryAlgorithm) algorithm).getPopulation() : algorithm.getResult());
+        if (values.length < population.size()) {
+            values = new double[population.size()];
+        }
+        int feasible = 0;
+        for (Solution solution : population) {
+            if (!solution.violatesConstraints()) {
+                values[feasible++] = solution.getObjective(0);
+            }
+        }
+        Arrays.sort(values, 0, feasible);
+
+        double seconds = (now - lastTime) / 1e9;
+        writer.record(label,
+                generation++,
+                (now - start) / 1e9,
+                evaluations,
+                (seconds > 0 ? (evaluations - lastEvaluations) / seconds : Double.NaN),
+                (decode - lastDecode) / 1e6,
+                (constraint - lastConstraint) / 1e6,
+                (population.size() == 0 ? 0.0 : (double) feasible / population.size()),
+                (feasible == 0 ? Double.NaN : values[0]),
+                (feasible == 0 ? Double.NaN : values[feasible / 2]),
+                statistics.getArchiveSize());
+
+        lastTime = now;
+        lastEvaluations = evaluations;
+        lastDecode = decode;
+        lastConstraint = constraint;
+    }
+}
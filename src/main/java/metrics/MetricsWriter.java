@@ -0,0 +1,107 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams records with a fixed set of columns to a file, as CSV or, for files ending in .jsonl or .json, as one JSON
+ *  object per line
+ *
+ * Every record is flushed as it is written, so the file can be followed while a run is going.  record() is
+ *  synchronized, so several runs (islands, batch jobs) may share one writer.  I/O errors after opening are
+ *  remembered rather than thrown, so a full disk never stops a run; see getError().
+ */
+public class MetricsWriter implements Closeable {
+
+    private final String[] columns;
+    private final boolean json;
+    private final BufferedWriter writer;
+    private IOException error;
+
+    /**
+     * @param file the file to create (or overwrite)
+     * @param columns the column names, in order
+     */
+    public MetricsWriter(Path file, String... columns) throws IOException {
+        this.columns = columns.clone();
+        String name = file.getFileName().toString();
+        this.json = name.endsWith(".jsonl") || name.endsWith(".json");
+        this.writer = Files.newBufferedWriter(file, Charset.forName("UTF-8"));
+        if (!json) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                sb.append(i == 0 ? "" : ",").append(columns[i]);
+            }
+            writer.write(sb.toString());
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * @param values one value per column; Numbers are written as-is (NaN and infinities as empty / null), anything
+     *               else as a string
+     */
+    public synchronized void record(Object... values) {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("expected " + columns.length + " values, got " + values.length);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (json) {
+            sb.append('{');
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (json) {
+                sb.append('"').append(columns[i]).append("\":");
+            }
+            Object value = values[i];
+            if (value instanceof Number) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    sb.append(json ? "null" : "");
+                }
+                else {
+                    sb.append(value);
+                }
+            }
+            else if (json) {
+                sb.append('"').append(String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            }
+            else {
+                sb.append(String.valueOf(value).replace(",", ";"));
+            }
+        }
+        if (json) {
+            sb.append('}');
+        }
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write(sb.toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * @return the first error hit while writing, or null
+     */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -1,19 +1,39 @@
 package misc;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 /**
  * Created by Tyson Loveless
+ *
+ * The location lists are kept as given; capability queries go through a per-cell bitmap and coordinate arrays built
+ *  once in the constructor, so they are O(1), lock-free, and allocation-free.
  */
 public class Architecture {
 
-    private int rows;
-    private int columns;
-    private Vector<Location<Integer, Integer>> inputs;
-    private Vector<Location<Integer, Integer>> outputs;
-    private Vector<Location<Integer, Integer>> sensors;
-    private Vector<Location<Integer, Integer>> detectors;
-    private Vector<Location<Integer, Integer>> heaters;
+    //cell capability flags, combined in the per-cell bitmap
+    public static final int INPUT = 1;
+    public static final int OUTPUT = 1 << 1;
+    public static final int SENSOR = 1 << 2;
+    public static final int DETECTOR = 1 << 3;
+    public static final int HEATER = 1 << 4;
+
+    private final int rows;
+    private final int columns;
+    private final Vector<Location<Integer, Integer>> inputs;
+    private final Vector<Location<Integer, Integer>> outputs;
+    private final Vector<Location<Integer, Integer>> sensors;
+    private final Vector<Location<Integer, Integer>> detectors;
+    private final Vector<Location<Integer, Integer>> heaters;
+
+    //capability bitmap, built once at construction: capabilities[y * mapWidth + x]
+    private final int mapWidth;
+    private final int mapHeight;
+    private final byte[] capabilities;
+    //coordinates of the cells with each capability, indexed by the flag's bit position
+    private final int[][] cellX;
+    private final int[][] cellY;
 
 
     /**
@@ -39,6 +59,35 @@ public class Architecture {
         this.sensors = sensors;
         this.detectors = detectors;
         this.heaters = heaters;
+
+        List<Vector<Location<Integer, Integer>>> byFlag = Arrays.asList(inputs, outputs, sensors, detectors, heaters);
+        int maxX = columns;
+        int maxY = rows;
+        for (Vector<Location<Integer, Integer>> locations : byFlag) {
+            for (Location<Integer, Integer> location : locations) {
+                maxX = Math.max(maxX, location.getX());
+                maxY = Math.max(maxY, location.getY());
+            }
+        }
+        this.mapWidth = maxX + 1;
+        this.mapHeight = maxY + 1;
+        this.capabilities = new byte[mapWidth * mapHeight];
+        this.cellX = new int[byFlag.size()][];
+        this.cellY = new int[byFlag.size()][];
+        for (int f = 0; f < byFlag.size(); f++) {
+            Vector<Location<Integer, Integer>> locations = byFlag.get(f);
+            cellX[f] = new int[locations.size()];
+            cellY[f] = new int[locations.size()];
+            for (int i = 0; i < locations.size(); i++) {
+                int x = locations.get(i).getX();
+                int y = locations.get(i).getY();
+                cellX[f][i] = x;
+                cellY[f][i] = y;
+                if (x >= 0 && y >= 0) {
+                    capabilities[y * mapWidth + x] |= (1 << f);
+                }
+            }
+        }
     }
 
     public int getRows() {
@@ -69,6 +118,50 @@ public class Architecture {
         return heaters;
     }
 
+    /**
+     * @return the capability flags of cell (x, y), 0 for cells off the chip
+     */
+    public int getCapabilities(int x, int y) {
+        if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) {
+            return 0;
+        }
+        return capabilities[y * mapWidth + x];
+    }
+
+    /**
+     * @param capability one of INPUT, OUTPUT, SENSOR, DETECTOR, HEATER
+     * @return true if cell (x, y) has the given capability
+     */
+    public boolean hasCapability(int x, int y, int capability) {
+        return (getCapabilities(x, y) & capability) != 0;
+    }
+
+    /**
+     * @param capability one of INPUT, OUTPUT, SENSOR, DETECTOR, HEATER
+     * @return number of cells with the given capability
+     */
+    public int getCount(int capability) {
+        return cellX[Integer.numberOfTrailingZeros(capability)].length;
+    }
+
+    /**
+     * @param capability one of INPUT, OUTPUT, SENSOR, DETECTOR, HEATER
+     * @param i index into the cells with that capability, in the order they were given in the architecture file
+     * @return x of the i-th cell with the given capability
+     */
+    public int getX(int capability, int i) {
+        return cellX[Integer.numberOfTrailingZeros(capability)][i];
+    }
+
+    /**
+     * @param capability one of INPUT, OUTPUT, SENSOR, DETECTOR, HEATER
+     * @param i index into the cells with that capability, in the order they were given in the architecture file
+     * @return y of the i-th cell with the given capability
+     */
+    public int getY(int capability, int i) {
+        return cellY[Integer.numberOfTrailingZeros(capability)][i];
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,255 @@
+package misc;
+
+import graph.Graph;
+import operation.Input;
+import operation.Mix;
+import operation.Operation;
+import operation.Output;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * An instance in a flat binary form that loads without parsing, little-endian:
+ *
+ *   int magic, int version, 32 bytes key (the hash of the text files it was compiled from), long file length
+ *   double alpha
+ *   int number of operations n, int 0
+ *   double[n] mix importances (0 for other operations)
+ *   int rows, int columns
+ *   for inputs, outputs, sensors, detectors, heaters: int count, int[count] x, int[count] y
+ *   int[n] operation types, int[n] reservoirs (0 for operations other than inputs and outputs)
+ *   for the interference graph, then the communication graph: int edges m, int[m] u, int[m] v, int[m] costs,
+ *       int[n+1] offsets, int[offsets[n]] neighbours, int[offsets[n]] adjacent edges
+ *
+ * Every array is read with one bulk copy out of the memory-mapped file, and the graphs take their compressed-sparse-
+ *  row arrays as they are, so loading allocates nothing per edge.  Operation sizes follow from their types and are not
+ *  stored.
+ */
+public class CompiledInstance implements Instance {
+
+    private static final int MAGIC = 0x444d4649;
+    static final int VERSION = 1;
+    private static final int KEY_LENGTH = 32;
+
+    private final Architecture arch;
+    private final List<Operation> operations;
+    private final Graph interferenceGraph;
+    private final Graph communicationGraph;
+    private final double alpha;
+
+    private CompiledInstance(Architecture arch, List<Operation> operations, Graph interferenceGraph,
+                             Graph communicationGraph, double alpha) {
+        this.arch = arch;
+        this.operations = operations;
+        this.interferenceGraph = interferenceGraph;
+        this.communicationGraph = communicationGraph;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @param instance the instance to compile
+     * @param key the hash of the files it was read from, KEY_LENGTH bytes
+     * @return the compiled instance
+     */
+    static ByteBuffer compile(Instance instance, byte[] key) {
+        Architecture arch = instance.getArch();
+        List<Operation> operations = instance.getOperations();
+        List<List<Location<Integer, Integer>>> locations = locations(arch);
+        Graph[] graphs = {instance.getInterferenceGraph(), instance.getCommunicationGraph()};
+        int n = operations.size();
+
+        long length = 4 + 4 + KEY_LENGTH + 8 + 8 + 4 + 4 + 8L * n + 4 + 4 + 4L * 2 * n;
+        for (List<Location<Integer, Integer>> cells : locations) {
+            length += 4 + 4L * 2 * cells.size();
+        }
+        for (Graph graph : graphs) {
+            length += 4 + 4L * 3 * graph.getNumberOfEdges() + 4L * (n + 1) + 4L * 2 * graph.getOffset(n);
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("instance is too large to compile");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).put(key).putLong(length);
+        out.putDouble(instance.getAlpha());
+        out.putInt(n).putInt(0);
+        for (Operation op : operations) {
+            out.putDouble(op.getType() == 3 ? ((Mix) op).getImportance() : 0.0);
+        }
+        out.putInt(arch.getRows()).putInt(arch.getColumns());
+        for (List<Location<Integer, Integer>> cells : locations) {
+            out.putInt(cells.size());
+            for (Location<Integer, Integer> cell : cells) {
+                out.putInt(cell.getX());
+            }
+            for (Location<Integer, Integer> cell : cells) {
+                out.putInt(cell.getY());
+            }
+        }
+        for (Operation op : operations) {
+            out.putInt(op.getType());
+        }
+        for (Operation op : operations) {
+            out.putInt(op instanceof Input ? ((Input) op).getReservoir() :
+                    op instanceof Output ? ((Output) op).getReservoir() : 0);
+        }
+        for (Graph graph : graphs) {
+            int m = graph.getNumberOfEdges();
+            out.putInt(m);
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.getEdgeU(e));
+            }
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.getEdgeV(e));
+            }
+            for (int e = 0; e < m; e++) {
+                out.putInt(graph.getEdgeCost(e));
+            }
+            for (int v = 0; v <= n; v++) {
+                out.putInt(graph.getOffset(v));
+            }
+            for (int k = 0; k < graph.getOffset(n); k++) {
+                out.putInt(graph.getNeighbour(k));
+            }
+            for (int k = 0; k < graph.getOffset(n); k++) {
+                out.putInt(graph.getAdjacentEdge(k));
+            }
+        }
+        out.flip();
+        return out;
+    }
+
+    private static List<List<Location<Integer, Integer>>> locations(Architecture arch) {
+        List<List<Location<Integer, Integer>>> locations = new ArrayList<List<Location<Integer, Integer>>>(5);
+        locations.add(arch.getInputs());
+        locations.add(arch.getOutputs());
+        locations.add(arch.getSensors());
+        locations.add(arch.getDetectors());
+        locations.add(arch.getHeaters());
+        return locations;
+    }
+
+    /**
+     * Memory-maps a compiled instance
+     *
+     * @param file the compiled instance
+     * @param key the hash of the text files it must have been compiled from
+     * @return the instance, or null if the file was compiled from other files, by another version, or is damaged
+     */
+    static CompiledInstance load(Path file, byte[] key) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            byte[] stored = new byte[KEY_LENGTH];
+            in.get(stored);
+            if (!Arrays.equals(stored, key) || in.getLong() != in.capacity()) {
+                return null;
+            }
+            double alpha = in.getDouble();
+            int n = in.getInt();
+            in.getInt();
+            if (n < 0 || n > in.remaining() / 8) {
+                return null;
+            }
+            double[] importance = new double[n];
+            in.asDoubleBuffer().get(importance);
+            in.position(in.position() + 8 * n);
+
+            int rows = in.getInt();
+            int columns = in.getInt();
+            List<Vector<Location<Integer, Integer>>> locations = new ArrayList<Vector<Location<Integer, Integer>>>(5);
+            for (int f = 0; f < 5; f++) {
+                int count = in.getInt();
+                int[] x = ints(in, count);
+                int[] y = ints(in, count);
+                Vector<Location<Integer, Integer>> cells = new Vector<Location<Integer, Integer>>(count);
+                for (int i = 0; i < count; i++) {
+                    cells.add(new Location<Integer, Integer>(x[i], y[i]));
+                }
+                locations.add(cells);
+            }
+            Architecture arch = new Architecture(rows, columns, locations.get(0), locations.get(1), locations.get(2),
+                    locations.get(3), locations.get(4));
+
+            int[] types = ints(in, n);
+            int[] reservoirs = ints(in, n);
+            List<Operation> operations = new ArrayList<Operation>(n);
+            for (int i = 0; i < n; i++) {
+                operations.add(Parser.newOperation(i+1, types[i], reservoirs[i], importance[i], arch));
+            }
+
+            Graph[] graphs = new Graph[2];
+            for (int g = 0; g < graphs.length; g++) {
+                int m = in.getInt();
+                int[] edgeU = ints(in, m);
+                int[] edgeV = ints(in, m);
+                int[] edgeCost = ints(in, m);
+                int[] offsets = ints(in, n + 1);
+                int[] neighbours = ints(in, offsets[n]);
+                int[] adjacentEdges = ints(in, offsets[n]);
+                graphs[g] = new Graph(operations, edgeU, edgeV, edgeCost, offsets, neighbours, adjacentEdges);
+            }
+            if (in.hasRemaining()) {
+                return null;
+            }
+            return new CompiledInstance(arch, operations, graphs[0], graphs[1], alpha);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the next count ints of in, which is moved past them
+     */
+    private static int[] ints(ByteBuffer in, int count) {
+        if (count < 0 || count > in.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    @Override
+    public Architecture getArch() {
+        return arch;
+    }
+
+    @Override
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public Graph getInterferenceGraph() {
+        return interferenceGraph;
+    }
+
+    @Override
+    public Graph getCommunicationGraph() {
+        return communicationGraph;
+    }
+
+    @Override
+    public double getAlpha() {
+        return alpha;
+    }
+}
@@ -0,0 +1,235 @@
+package misc;
+
+import graph.Graph;
+
+/**
+ * Moves the operations of a decoded placement onto free, legal cells before it is evaluated
+ *
+ * Operations are settled one at a time in ID order, inputs, outputs, and pinned operations first since they never
+ *  move.  For each operation its already-settled interference neighbours are rasterised onto an OccupancyGrid; if
+ *  its anchor is out of bounds or its footprint touches one of them, it is moved to the nearest (by Manhattan
+ *  distance) anchor where it fits: any in-bounds anchor for a mix, split, merge, or store, or another cell with the
+ *  right Architecture capability for a sense, detect, or heat.  Sizes and orientations are never changed, and an
+ *  operation with no free legal anchor is left where it is, so the repair is best-effort and the constraints still
+ *  have the last word.
+ *  A placement that is already feasible comes out unchanged.
+ *
+ * The repair itself is immutable and can be shared between threads; the grid and flags passed in are per-thread.
+ */
+public class FeasibilityRepair {
+
+    /**
+     * What happens to a repaired placement
+     */
+    public enum Mode {
+        //no repair
+        OFF,
+        //the repaired positions are written back into the genome, so offspring inherit them
+        LAMARCKIAN,
+        //only the evaluated placement is repaired, the genome is left as it was
+        BALDWINIAN
+    }
+
+    private final Architecture architecture;
+    private final Graph interferenceGraph;
+    private final int[] types;
+    private final int[] capability;
+    private final int selectionLimit;
+    //operations kept where they are as inputs and outputs are, or null for none
+    private final boolean[] pinned;
+
+    /**
+     * @param arch the architecture placements are made on
+     * @param IG the interference graph, whose endpoints may not overlap
+     * @param types operation type, indexed by ID-1
+     * @param capability Architecture capability each operation must be placed on, 0 for none, indexed by ID-1
+     * @param selectionLimit number of capability cells the genome can address; cells listed after it are never used
+     */
+    public FeasibilityRepair(Architecture arch, Graph IG, int[] types, int[] capability, int selectionLimit) {
+        this(arch, IG, types, capability, selectionLimit, null);
+    }
+
+    /**
+     * @param pinned per operation, whether it must stay where it is like an input or output, e.g. because an
+     *               incremental re-placement keeps it; null for none
+     */
+    public FeasibilityRepair(Architecture arch, Graph IG, int[] types, int[] capability, int selectionLimit,
+                             boolean[] pinned) {
+        this.architecture = arch;
+        this.interferenceGraph = IG;
+        this.types = types;
+        this.capability = capability;
+        this.selectionLimit = selectionLimit;
+        this.pinned = pinned;
+    }
+
+    /**
+     * Repairs a placement in place; the objective values of sol are left untouched and must be recomputed
+     *
+     * @param sol the decoded placement
+     * @param grid this thread's grid, overwritten
+     * @param settled this thread's per-operation scratch flags, overwritten
+     * @param moved receives, per operation, whether it was moved
+     * @return number of operations moved
+     */
+    public int repair(Phenotype sol, OccupancyGrid grid, boolean[] settled, boolean[] moved) {
+        for (int i = 0; i < types.length; i++) {
+            settled[i] = isFixed(i);
+            moved[i] = false;
+        }
+
+        int count = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (settled[i]) {
+                continue;
+            }
+            if (place(sol, i, grid, settled)) {
+                moved[i] = true;
+                count++;
+            }
+            settled[i] = true;
+        }
+        return count;
+    }
+
+    /**
+     * Moves one operation, if it needs to, to the nearest legal anchor clear of its settled interference neighbours;
+     *  the caller marks it settled afterwards
+     *
+     * @param sol the placement, whose settled operations are final
+     * @param i the operation, not an input or output
+     * @param grid this thread's grid, overwritten
+     * @param settled per operation, whether its position is final
+     * @return true if the operation was moved
+     */
+    public boolean place(Phenotype sol, int i, OccupancyGrid grid, boolean[] settled) {
+        markNeighbours(sol, i, grid, settled);
+        if (fits(sol, i, sol.x[i], sol.y[i], grid)) {
+            return false;
+        }
+        return relocate(sol, i, sol.x[i], sol.y[i], grid);
+    }
+
+    /**
+     * Moves one operation to the legal anchor nearest (x, y) that is clear of its settled interference neighbours,
+     *  wherever it is now; the caller marks it settled afterwards
+     *
+     * @return false, leaving the operation where it was, if there is no such anchor
+     */
+    public boolean placeNear(Phenotype sol, int i, int x, int y, OccupancyGrid grid, boolean[] settled) {
+        markNeighbours(sol, i, grid, settled);
+        return relocate(sol, i, x, y, grid);
+    }
+
+    private void markNeighbours(Phenotype sol, int i, OccupancyGrid grid, boolean[] settled) {
+        grid.clear();
+        for (int a = interferenceGraph.getOffset(i); a < interferenceGraph.getOffset(i+1); a++) {
+            int j = interferenceGraph.getNeighbour(a);
+            if (settled[j] && grid.contains(sol.x[j], sol.y[j], sol.width[j], sol.height[j])) {
+                grid.mark(sol.x[j], sol.y[j], sol.width[j], sol.height[j], j, null);
+            }
+        }
+    }
+
+    /**
+     * @return true for inputs and outputs, whose locations are fixed by the instance, and for pinned operations
+     */
+    public boolean isFixed(int i) {
+        return types[i] == 1 || types[i] == 2 || (pinned != null && pinned[i]);
+    }
+
+    /**
+     * @return true if every constraint on operation i holds: it is in bounds, on a capable cell if it needs one, and
+     *  clear of all of its interference neighbours wherever they are
+     */
+    public boolean isLegal(Phenotype sol, int i) {
+        if (sol.x[i] <= 1 || sol.x[i] >= architecture.getColumns() || sol.y[i] <= 1 || sol.y[i] >= architecture.getRows()) {
+            return false;
+        }
+        if (capability[i] != 0 && !architecture.hasCapability(sol.x[i], sol.y[i], capability[i])) {
+            return false;
+        }
+        for (int a = interferenceGraph.getOffset(i); a < interferenceGraph.getOffset(i+1); a++) {
+            if (InterferenceChecker.overlaps(sol, i, interferenceGraph.getNeighbour(a))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if operation i anchored at (x, y) is in bounds, on a capable cell if it needs one, and clear of
+     *  everything rasterised onto the grid
+     */
+    private boolean fits(Phenotype sol, int i, int x, int y, OccupancyGrid grid) {
+        if (x <= 1 || x >= architecture.getColumns() || y <= 1 || y >= architecture.getRows()) {
+            return false;
+        }
+        if (capability[i] != 0 && !architecture.hasCapability(x, y, capability[i])) {
+            return false;
+        }
+        return grid.contains(x, y, sol.width[i], sol.height[i]) && !grid.isOccupied(x, y, sol.width[i], sol.height[i]);
+    }
+
+    /**
+     * Moves operation i to the legal anchor nearest (x, y) that fits on the grid
+     */
+    private boolean relocate(Phenotype sol, int i, int x, int y, OccupancyGrid grid) {
+        return (capability[i] != 0 ? relocateToCapability(sol, i, x, y, grid) : relocateToAnchor(sol, i, x, y, grid));
+    }
+
+    /**
+     * Searches the in-bounds anchors ring by ring outward from (x, y), clamped into bounds
+     */
+    private boolean relocateToAnchor(Phenotype sol, int i, int fromX, int fromY, OccupancyGrid grid) {
+        int maxX = architecture.getColumns() - 1;
+        int maxY = architecture.getRows() - 1;
+        int cx = Math.max(2, Math.min(maxX, fromX));
+        int cy = Math.max(2, Math.min(maxY, fromY));
+        int radius = (maxX - 2) + (maxY - 2);
+        for (int d = 0; d <= radius; d++) {
+            for (int dx = -d; dx <= d; dx++) {
+                int x = cx + dx;
+                if (x < 2 || x > maxX) {
+                    continue;
+                }
+                int dy = d - Math.abs(dx);
+                if (fits(sol, i, x, cy - dy, grid)) {
+                    sol.x[i] = x;
+                    sol.y[i] = cy - dy;
+                    return true;
+                }
+                if (dy != 0 && fits(sol, i, x, cy + dy, grid)) {
+                    sol.x[i] = x;
+                    sol.y[i] = cy + dy;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks the addressable cell with the operation's capability nearest (x, y)
+     */
+    private boolean relocateToCapability(Phenotype sol, int i, int fromX, int fromY, OccupancyGrid grid) {
+        int count = Math.min(selectionLimit, architecture.getCount(capability[i]));
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+            int x = architecture.getX(capability[i], k);
+            int y = architecture.getY(capability[i], k);
+            int distance = Math.abs(x - fromX) + Math.abs(y - fromY);
+            if (distance < bestDistance && fits(sol, i, x, y, grid)) {
+                best = k;
+                bestDistance = distance;
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        sol.x[i] = architecture.getX(capability[i], best);
+        sol.y[i] = architecture.getY(capability[i], best);
+        return true;
+    }
+}
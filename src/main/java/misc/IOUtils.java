@@ -0,0 +1,66 @@
+package misc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File and stream helpers shared across packages
+ */
+public class IOUtils {
+
+    private IOUtils() {
+    }
+
+    /**
+     * @param in the stream to read to its end; not closed
+     * @return everything read, nothing if in is null
+     */
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (in == null) {
+            return bytes.toByteArray();
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * (Over)writes a file so that it always holds either its previous contents or all of the new ones
+     *
+     * The contents go to a temporary file of a unique name next to the target, are forced to disk, and the temporary
+     *  file is then renamed over the target, atomically where the file system can.  Several writers of the same file
+     *  therefore never see each other's temporary files; the last rename wins.
+     *
+     * @param file the file to write; its directory must exist
+     * @param contents written from its position to its limit
+     */
+    public static void writeAtomically(Path file, ByteBuffer contents) throws IOException {
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (contents.hasRemaining()) {
+                    out.write(contents);
+                }
+                out.force(true);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package misc;
+
+import graph.Graph;
+import operation.Operation;
+
+import java.util.List;
+
+/**
+ * A problem instance, either parsed from its four text files (Parser) or loaded from its compiled form
+ *  (CompiledInstance)
+ */
+public interface Instance {
+
+    Architecture getArch();
+
+    /**
+     * @return the operations, the one with ID i at index i-1
+     */
+    List<Operation> getOperations();
+
+    Graph getInterferenceGraph();
+
+    Graph getCommunicationGraph();
+
+    double getAlpha();
+}
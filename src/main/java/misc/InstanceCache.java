@@ -0,0 +1,116 @@
+package misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of compiled instances, each named after the SHA-256 of the text files it was compiled from
+ *
+ * Looking an instance up hashes its files, which is a single pass over their bytes, and memory-maps the compiled
+ *  instance of that hash if there is one.  Otherwise the files are parsed and the result is compiled into the
+ *  directory for next time.  Since the name covers the files' contents (and the format version), an instance whose
+ *  files changed in any way is simply compiled afresh, and a damaged or foreign file under the right name is
+ *  replaced.  Compiled instances are written to a temporary file and moved into place, so several processes can share
+ *  the directory.
+ */
+public class InstanceCache {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String SUFFIX = ".instance";
+
+    private final Path directory;
+
+    /**
+     * @param directory where compiled instances are kept; created when the first one is written
+     */
+    public InstanceCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param files the instance files, as for Parser
+     * @return the instance, from the cache if it was compiled before
+     * @throws java.io.FileNotFoundException if a file exists neither on disk nor on the classpath
+     * @throws InstanceFormatException if the instance has to be parsed and a file does not follow the format
+     */
+    public Instance load(String... files) throws IOException {
+        byte[] key = hash(files);
+        Path compiled = directory.resolve(toHex(key) + SUFFIX);
+        if (Files.isRegularFile(compiled)) {
+            System.out.print("\nLoading compiled instance " + compiled.getFileName() + "...");
+            CompiledInstance instance = CompiledInstance.load(compiled, key);
+            if (instance != null) {
+                System.out.print("....Done!.....\n\n");
+                return instance;
+            }
+            System.out.print("....damaged, recompiling.....\n");
+        }
+
+        Parser parser = new Parser(files);
+        try {
+            write(compiled, CompiledInstance.compile(parser, key));
+        } catch (IOException e) {
+            //the cache only saves time, so the run goes on without it
+            System.out.print("Could not cache compiled instance in " + directory + ": " + e + "\n\n");
+        }
+        return parser;
+    }
+
+    /**
+     * @return the SHA-256 of the format version and of each file's role in the instance and contents
+     */
+    public static byte[] hash(String... files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(CompiledInstance.VERSION).putInt(files.length);
+        for (int k = 0; k < files.length; k++) {
+            String file = files[k];
+            //the role Parser gives the file rather than its path, so the same instance in another folder still hits
+            buffer.put(Parser.roleOf(file, k).getBytes(Charset.forName("UTF-8"))).put((byte) 0);
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            long length = 0;
+            try (ReadableByteChannel in = Parser.open(file)) {
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    length += read;
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            buffer.putLong(length);
+        }
+        buffer.flip();
+        digest.update(buffer);
+        return digest.digest();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private void write(Path compiled, ByteBuffer contents) throws IOException {
+        Files.createDirectories(directory);
+        IOUtils.writeAtomically(compiled, contents);
+    }
+}
@@ -0,0 +1,33 @@
+package misc;
+
+import java.io.IOException;
+
+/**
+ * An instance file that does not follow the format, with the file and line where it goes wrong
+ */
+public class InstanceFormatException extends IOException {
+
+    private static final long serialVersionUID = -3160218553372817705L;
+
+    private final String file;
+    private final int line;
+
+    /**
+     * @param file name of the file
+     * @param line line number, from 1
+     * @param message what is wrong
+     */
+    public InstanceFormatException(String file, int line, String message) {
+        super(file + ":" + line + ": " + message);
+        this.file = file;
+        this.line = line;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
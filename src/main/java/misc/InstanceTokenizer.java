@@ -0,0 +1,184 @@
+package misc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the whitespace-separated numbers of an instance file straight from a byte channel, line by line
+ *
+ * Every record of an instance file is one line: nextLine() moves to the next line that is not blank (whatever is
+ *  left of the current one is ignored), and nextInt() and nextDouble() read the line's tokens in turn.  Integers are
+ *  parsed digit by digit and decimals with Double.parseDouble on the token alone, so no line is ever turned into a
+ *  String or split.  Spaces, tabs, and carriage returns separate tokens.  Errors name the file and line.
+ */
+final class InstanceTokenizer implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final String file;
+    private final ByteBuffer buffer;
+    private final StringBuilder token;
+    private boolean exhausted;
+    //lines ended so far; the current line is the next one
+    private int lines;
+    private boolean started;
+
+    /**
+     * @param channel the file's contents, closed with the tokenizer
+     * @param file the file's name, for error messages
+     */
+    InstanceTokenizer(ReadableByteChannel channel, String file) {
+        this.channel = channel;
+        this.file = file;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+        this.token = new StringBuilder();
+    }
+
+    /**
+     * @return the next byte without consuming it, or -1 at the end of the file
+     */
+    private int peek() throws IOException {
+        while (!buffer.hasRemaining()) {
+            if (exhausted) {
+                return -1;
+            }
+            buffer.clear();
+            exhausted = (channel.read(buffer) < 0);
+            buffer.flip();
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static boolean isSeparator(int c) {
+        return c == '\n' || c < 0 || isBlank(c);
+    }
+
+    private void skipBlanks() throws IOException {
+        while (isBlank(peek())) {
+            buffer.get();
+        }
+    }
+
+    /**
+     * Moves to the start of the next line that holds anything
+     *
+     * @return false at the end of the file
+     */
+    boolean nextLine() throws IOException {
+        if (started) {
+            for (int c = peek(); c >= 0 && c != '\n'; c = peek()) {
+                buffer.get();
+            }
+        }
+        started = true;
+        while (true) {
+            skipBlanks();
+            int c = peek();
+            if (c != '\n') {
+                return c >= 0;
+            }
+            buffer.get();
+            lines++;
+        }
+    }
+
+    /**
+     * Moves to the next line, which must exist
+     *
+     * @param expected what the line should hold, for the error message
+     */
+    void require(String expected) throws IOException {
+        if (!nextLine()) {
+            throw error("unexpected end of file, expected " + expected);
+        }
+    }
+
+    /**
+     * @param what what the token is, for error messages
+     * @return the next token on the current line, as an integer
+     */
+    int nextInt(String what) throws IOException {
+        skipBlanks();
+        int c = peek();
+        if (isSeparator(c)) {
+            throw error("expected " + what);
+        }
+        boolean negative = (c == '-');
+        if (c == '-' || c == '+') {
+            buffer.get();
+            c = peek();
+        }
+        long value = 0;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            value = 10 * value + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error(what + " is out of range");
+            }
+            digits++;
+            buffer.get();
+            c = peek();
+        }
+        if (digits == 0 || !isSeparator(c) || (!negative && value > Integer.MAX_VALUE)) {
+            String read = (negative ? "-" : "") + (digits > 0 ? String.valueOf(value) : "");
+            throw error("expected " + what + ", found '" + rest(read) + "'");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * @param what what the token is, for error messages
+     * @return the next token on the current line, as a decimal
+     */
+    double nextDouble(String what) throws IOException {
+        skipBlanks();
+        if (isSeparator(peek())) {
+            throw error("expected " + what);
+        }
+        String text = rest("");
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("expected " + what + ", found '" + text + "'");
+        }
+    }
+
+    /**
+     * @return prefix followed by the rest of the current token, which is consumed
+     */
+    private String rest(String prefix) throws IOException {
+        token.setLength(0);
+        token.append(prefix);
+        for (int c = peek(); !isSeparator(c); c = peek()) {
+            token.append((char) (buffer.get() & 0xff));
+        }
+        return token.toString();
+    }
+
+    /**
+     * @return the current line number, from 1
+     */
+    int getLine() {
+        return lines + 1;
+    }
+
+    /**
+     * @return an exception reporting a problem on the current line
+     */
+    InstanceFormatException error(String message) {
+        return new InstanceFormatException(file, getLine(), message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,93 @@
+package misc;
+
+import graph.Graph;
+
+/**
+ * Checks every interference graph edge of a decoded placement for overlapping footprints
+ *
+ * Every operation that appears in the interference graph is rasterised once onto an OccupancyGrid, which flags the
+ *  operations whose footprint shares a cell with any other.  An edge with an unflagged endpoint cannot overlap and
+ *  passes in O(1); only edges between two flagged operations fall back to rectangle arithmetic.
+ *
+ * The checker itself is immutable and can be shared between threads; the grid and flags passed in are per-thread.
+ */
+public class InterferenceChecker {
+    private final int[] igU;
+    private final int[] igV;
+    //operations that appear in at least one interference edge, each listed once
+    private final int[] igOps;
+
+    /**
+     * @param IG the interference graph
+     */
+    public InterferenceChecker(Graph IG) {
+        int m = IG.getNumberOfEdges();
+        this.igU = new int[m];
+        this.igV = new int[m];
+        for (int e = 0; e < m; e++) {
+            igU[e] = IG.getEdgeU(e);
+            igV[e] = IG.getEdgeV(e);
+        }
+        int count = 0;
+        for (int v = 0; v < IG.getNumberOfVertices(); v++) {
+            if (IG.getDegree(v) > 0) {
+                count++;
+            }
+        }
+        this.igOps = new int[count];
+        int k = 0;
+        for (int v = 0; v < IG.getNumberOfVertices(); v++) {
+            if (IG.getDegree(v) > 0) {
+                igOps[k++] = v;
+            }
+        }
+    }
+
+    public int getNumberOfEdges() {
+        return igU.length;
+    }
+
+    /**
+     * Writes one constraint per interference edge: 0 if the endpoints do not overlap, -1 if they do
+     *
+     * @param sol the decoded placement
+     * @param grid this thread's grid, overwritten
+     * @param contested this thread's per-operation scratch flags, overwritten
+     * @param constraints receives the results
+     * @param offset index of the first interference constraint in constraints
+     */
+    public void check(Phenotype sol, OccupancyGrid grid, boolean[] contested, double[] constraints, int offset) {
+        if (igU.length == 0) {
+            return;
+        }
+
+        grid.clear();
+        for (int op : igOps) {
+            contested[op] = false;
+        }
+        for (int op : igOps) {
+            if (!grid.contains(sol.x[op], sol.y[op], sol.width[op], sol.height[op])) {
+                //off the grid: cannot be rasterised, so leave it to the rectangle test
+                contested[op] = true;
+            }
+            else if (grid.mark(sol.x[op], sol.y[op], sol.width[op], sol.height[op], op, contested)) {
+                contested[op] = true;
+            }
+        }
+
+        for (int e = 0; e < igU.length; e++) {
+            int u = igU[e];
+            int v = igV[e];
+            boolean pass = !(contested[u] && contested[v]) || !overlaps(sol, u, v);
+            constraints[offset + e] = (pass ? 0 : -1);
+        }
+    }
+
+    /**
+     * @return true if the footprints of u and v share at least one cell
+     */
+    public static boolean overlaps(Phenotype sol, int u, int v) {
+        return sol.x[u] < sol.x[v] + sol.width[v] && sol.x[v] < sol.x[u] + sol.width[u] &&
+                sol.y[u] < sol.y[v] + sol.height[v] && sol.y[v] < sol.y[u] + sol.height[u];
+    }
+}
@@ -0,0 +1,121 @@
+package misc;
+
+import java.util.Arrays;
+
+/**
+ * Primitive occupancy grid over the chip, one int per cell
+ *
+ * Cells are stamped with the current epoch instead of being cleared: a cell is occupied only if its stamp equals the
+ *  current epoch, so starting a fresh grid is a single increment.  Each occupied cell also records the first
+ *  operation rasterised onto it.
+ */
+public class OccupancyGrid {
+    private final int columns;
+    private final int rows;
+    private final int[] stamp;
+    private final int[] owner;
+    private int epoch;
+
+    /**
+     * @param columns number of cells in x, coordinates 0 .. columns-1
+     * @param rows number of cells in y, coordinates 0 .. rows-1
+     */
+    public OccupancyGrid(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        this.stamp = new int[columns * rows];
+        this.owner = new int[columns * rows];
+        this.epoch = 1;
+    }
+
+    /**
+     * Sizes a grid to hold every anchor the decoder can produce on this architecture plus the largest footprint
+     */
+    public OccupancyGrid(Architecture arch) {
+        this(arch.getColumns() + 6, arch.getRows() + 6);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Empties the grid in O(1)
+     */
+    public void clear() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * @return true if the whole w x h rectangle anchored at (x, y) lies on the grid
+     */
+    public boolean contains(int x, int y, int w, int h) {
+        return x >= 0 && y >= 0 && x + w <= columns && y + h <= rows;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        return stamp[y * columns + x] == epoch;
+    }
+
+    /**
+     * @return the operation that occupies (x, y), or -1 if the cell is free
+     */
+    public int ownerAt(int x, int y) {
+        int c = y * columns + x;
+        return (stamp[c] == epoch ? owner[c] : -1);
+    }
+
+    /**
+     * @return true if any cell of the w x h rectangle anchored at (x, y) is occupied; the rectangle must be on the grid
+     */
+    public boolean isOccupied(int x, int y, int w, int h) {
+        for (int k = 0; k < h; k++) {
+            int row = (y + k) * columns + x;
+            for (int j = 0; j < w; j++) {
+                if (stamp[row + j] == epoch) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rasterises a footprint onto the grid; cells that are already occupied keep their first owner
+     *
+     * @param x left column
+     * @param y top row
+     * @param w width in cells
+     * @param h height in cells
+     * @param op the operation occupying the rectangle
+     * @param collisions if not null, set to true at the owner of every already-occupied cell the footprint touches
+     * @return true if the footprint touched a cell that was already occupied
+     */
+    public boolean mark(int x, int y, int w, int h, int op, boolean[] collisions) {
+        boolean collided = false;
+        for (int k = 0; k < h; k++) {
+            int row = (y + k) * columns + x;
+            for (int j = 0; j < w; j++) {
+                int c = row + j;
+                if (stamp[c] == epoch) {
+                    collided = true;
+                    if (collisions != null) {
+                        collisions[owner[c]] = true;
+                    }
+                }
+                else {
+                    stamp[c] = epoch;
+                    owner[c] = op;
+                }
+            }
+        }
+        return collided;
+    }
+}
@@ -0,0 +1,117 @@
+package misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits command line arguments into "--name=value" / "--flag" options and positional arguments (the input files)
+ */
+public class Options {
+
+    private final Map<String, String> options;
+    private final List<String> files;
+
+    public Options(String... args) {
+        this.options = new HashMap<>();
+        this.files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    options.put(arg.substring(2), "true");
+                }
+                else {
+                    options.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            }
+            else {
+                files.add(arg);
+            }
+        }
+    }
+
+    /**
+     * @return the positional (non-option) arguments, in order
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = options.get(name);
+        return (value == null ? defaultValue : value);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        return (value == null ? defaultValue : Integer.parseInt(value));
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = options.get(name);
+        return (value == null ? defaultValue : Long.parseLong(value));
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = options.get(name);
+        return (value == null ? defaultValue : Double.parseDouble(value));
+    }
+
+    /**
+     * A list of values, given either as "a,b,c" or as an inclusive range "start:end:step"
+     *
+     * @return the values in order, or null if the option is not set
+     */
+    public double[] getDoubles(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value.indexOf(':') >= 0) {
+            String[] parts = value.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("--" + name + " range must be start:end:step, was " + value);
+            }
+            double start = Double.parseDouble(parts[0]);
+            double end = Double.parseDouble(parts[1]);
+            double step = Double.parseDouble(parts[2]);
+            if (!(step > 0) || end < start) {
+                throw new IllegalArgumentException("--" + name + " range must have start <= end and step > 0, was " + value);
+            }
+            //computed from the index rather than accumulated, and rounded, so 0:1:0.05 gives 0.15 and ends on 1
+            int count = (int) Math.floor((end - start) / step + 1e-9) + 1;
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = Math.min(end, Math.round((start + i * step) * 1e12) / 1e12);
+            }
+            return values;
+        }
+        String[] parts = value.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * Number of worker threads: a positive count, or "all" for one per available core
+     */
+    public int getThreads(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("all")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Integer.parseInt(value));
+    }
+}
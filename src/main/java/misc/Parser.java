@@ -1,21 +1,29 @@
 package misc;
 import graph.*;
 import operation.*;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
-//String archFile, String opsFile, String graphFile, String alphaFile
-
 /**
+ * Reads a problem instance: the architecture (arch.in), the assay's operations (ops.in), the interference and
+ *  communication graphs (graphs.in), and alpha (alpha.in)
  *
+ * Files are streamed through an InstanceTokenizer, so reading is linear in their size, and operations are kept in
+ *  an ArrayList, so an edge finds its endpoints by ID in constant time.  A file that does not follow the format is
+ *  reported with an InstanceFormatException naming the file and line.
  */
-public class Parser {
-
+public class Parser implements Instance {
 
-    //private final static Logger logger = LogManager.getLogger(Parser.class);
+    //the instance files, in the order they must be read
+    private static final String[] FILES = {"arch.in", "ops.in", "graphs.in", "alpha.in"};
 
     private Architecture arch;
     private List<Operation> operations;
@@ -24,278 +32,306 @@ public class Parser {
     private double alpha;
 
     /**
+     * Parses an instance; each file is looked up on the filesystem first and then as a classpath resource.  A file's
+     *  role is taken from its name (arch.in, ops.in, graphs.in, alpha.in) or, if its name is none of those, from its
+     *  position in the list.
      *
-     * @param files
-     * @throws FileNotFoundException
+     * @param files the instance files, in the order above
+     * @throws FileNotFoundException if a file exists neither on disk nor on the classpath
+     * @throws InstanceFormatException if a file does not follow the format
      */
-    public Parser(String... files) throws FileNotFoundException {
-
-        BufferedReader reader = null;
-        File file;
-        FileReader filereader;
-        try {
-            for (String filename : files) {
-                file = new File(this.getClass().getClassLoader().getResource(filename).getFile());
-                //file = new File(filename);
-                filereader = new FileReader(file);
-                reader = new BufferedReader(filereader);
+    public Parser(String... files) throws IOException {
+        for (int k = 0; k < files.length; k++) {
+            String role = roleOf(files[k], k);
+            try (InstanceTokenizer in = new InstanceTokenizer(open(files[k]), files[k])) {
+                parse(role, in);
+            }
+        }
+    }
 
-                if (filename.contains("arch.in")) {
-                    System.out.print("\nConfiguring architecture...");
-                    parseArchFile(reader);
-                    //logger.debug("\nArchitecture parsed:\n" + getArch().toString() + "\n");
-                    System.out.print("....Done!.....\n\n");
-                }
-                else if (filename.contains("ops.in")) {
-                    System.out.print("Reading assay...");
-                    parseOpsFile(reader);
-                    //logger.debug("\nOperations parsed:\n" + getOperations().toString() + "\n");
-                    System.out.print("....Done!.....\n\n");
-                }
-                else if (filename.contains("graphs.in")) {
-                    System.out.print("Looking for interference and dependencies...");
-                    parseGraphsFile(reader);
-                    //logger.debug("\nGraphs parsed:\n" +
-                    //        "Interference Graph:\n" + getInterferenceGraph().toString() +
-                    //        "\nCommunication Graph:\n" + getCommunicationGraph().toString() + "\n");
-                    System.out.print("....Done!.....\n\n");
-                }
-                else if (filename.contains("alpha.in")) {
-                    System.out.print("Configuring objective...");
-                    parseAlphaFile(reader);
-                    //logger.debug("\nAlpha parsed:\n" + getAlpha() + "\n");
-                    System.out.print("....Done!.....\n\n");
-                }
-                else {
-                    throw new FileNotFoundException("File: \"" + filename + "\" not found.");
-                }
+    /**
+     * Parses an instance from streams, e.g. ones received over the network; the streams are closed
+     *
+     * @throws InstanceFormatException if a stream does not follow the format, named after the file it stands for
+     */
+    public Parser(InputStream arch, InputStream ops, InputStream graphs, InputStream alpha) throws IOException {
+        InputStream[] streams = {arch, ops, graphs, alpha};
+        for (int k = 0; k < FILES.length; k++) {
+            try (InstanceTokenizer in = new InstanceTokenizer(Channels.newChannel(streams[k]), FILES[k])) {
+                parse(FILES[k], in);
+            }
+        }
+    }
 
+    /**
+     * Parses an instance sent as one stream: arch.in, ops.in, graphs.in and alpha.in one after another, each ending
+     *  with a line break.  Every file says how many lines it holds, so no separators are needed.  The stream is
+     *  closed.
+     *
+     * @param name names the stream in error messages, whose line numbers count from its start
+     * @throws InstanceFormatException if the stream does not follow the format
+     */
+    public Parser(InputStream instance, String name) throws IOException {
+        try (InstanceTokenizer in = new InstanceTokenizer(Channels.newChannel(instance), name)) {
+            for (String role : FILES) {
+                parse(role, in);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                reader.close();
-            } catch (Exception e) {
-                e.printStackTrace();
+        }
+    }
+
+    static String roleOf(String filename, int position) {
+        Path name = Paths.get(filename).getFileName();
+        for (String role : FILES) {
+            if (name != null && name.toString().contains(role)) {
+                return role;
             }
         }
+        if (position < FILES.length) {
+            return FILES[position];
+        }
+        throw new IllegalArgumentException("cannot tell which instance file \"" + filename + "\" is");
+    }
 
+    private void parse(String role, InstanceTokenizer in) throws IOException {
+        switch (role) {
+            case "arch.in":
+                System.out.print("\nConfiguring architecture...");
+                parseArchFile(in);
+                System.out.print("....Done!.....\n\n");
+                break;
+            case "ops.in":
+                if (arch == null) {
+                    throw in.error("arch.in must be read before ops.in");
+                }
+                System.out.print("Reading assay...");
+                parseOpsFile(in);
+                System.out.print("....Done!.....\n\n");
+                break;
+            case "graphs.in":
+                if (operations == null) {
+                    throw in.error("ops.in must be read before graphs.in");
+                }
+                System.out.print("Looking for interference and dependencies...");
+                parseGraphsFile(in);
+                System.out.print("....Done!.....\n\n");
+                break;
+            default:
+                System.out.print("Configuring objective...");
+                parseAlphaFile(in);
+                System.out.print("....Done!.....\n\n");
+        }
     }
 
     /**
-     *
-     * @param reader
-     * @param num_locations
-     * @return
-     * @throws IOException
+     * @return a channel over the file on disk if it exists, otherwise over the classpath resource of that name (which
+     *         may be inside a jar)
      */
-    private Vector<Location<Integer, Integer>> parseLocations(BufferedReader reader, int num_locations) throws IOException {
-        Vector<Location<Integer, Integer>> locations = new Vector<Location<Integer, Integer>>(num_locations);
-        String line;
-        String[] strings;
-        for (int i = 0; i < num_locations; i++) {
-            line = reader.readLine();
+    static ReadableByteChannel open(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        if (Files.isRegularFile(path)) {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        InputStream resource = Parser.class.getClassLoader().getResourceAsStream(filename);
+        if (resource == null) {
+            throw new FileNotFoundException("File: \"" + filename + "\" not found.");
+        }
+        return Channels.newChannel(resource);
+    }
 
-            //expecting "(x, y)"
-            //List<Integer> loc = new ArrayList<Integer>(Integer.parseInt(line));
-            strings = line.split("\\s+");
+    private static int count(InstanceTokenizer in, String what) throws IOException {
+        int count = in.nextInt(what);
+        if (count < 0) {
+            throw in.error(what + " must not be negative, was " + count);
+        }
+        return count;
+    }
 
-            Integer x = Integer.parseInt(strings[0]);
-            Integer y = Integer.parseInt(strings[1]);
-            Location<Integer, Integer> location = new Location<Integer, Integer>(x, y);
-            locations.add(i, location);
+    private static Vector<Location<Integer, Integer>> parseLocations(InstanceTokenizer in, int num_locations,
+                                                                     String what) throws IOException {
+        Vector<Location<Integer, Integer>> locations = new Vector<Location<Integer, Integer>>(num_locations);
+        for (int i = 0; i < num_locations; i++) {
+            //expecting "x y"
+            in.require(what + " location " + (i+1));
+            int x = in.nextInt(what + " x");
+            int y = in.nextInt(what + " y");
+            locations.add(new Location<Integer, Integer>(x, y));
         }
         return locations;
     }
 
-    private List<Edge<Operation, Operation>> parseEdges(BufferedReader reader, int num_edges, boolean costs) throws IOException {
-        List<Edge<Operation, Operation>> edges = new LinkedList<Edge<Operation, Operation>>();
-        String line;
-        String[] strings;
-        Edge<Operation, Operation> edge;
-        if (costs) {
-            Map<Edge<Operation, Operation>, Integer> costMap = new HashMap<Edge<Operation, Operation>, Integer>();
+    /**
+     * @return the operation with the next ID on the line
+     */
+    private Operation parseOperation(InstanceTokenizer in, String what) throws IOException {
+        int id = in.nextInt(what);
+        if (id < 1 || id > operations.size()) {
+            throw in.error(what + " " + id + " is not an operation (1.." + operations.size() + ")");
         }
-        for (int i = 0; i < num_edges; i++) {
-            line = reader.readLine();
-            strings = line.trim().split("\\s+");
-            //expecting "op1 op2"
-            Operation op1 = operations.get(Integer.parseInt(strings[0])-1);
-            Operation op2 = operations.get(Integer.parseInt(strings[1])-1);
+        return operations.get(id-1);
+    }
 
+    private List<Edge<Operation, Operation>> parseEdges(InstanceTokenizer in, int num_edges, boolean costs,
+                                                        String what) throws IOException {
+        List<Edge<Operation, Operation>> edges = new ArrayList<Edge<Operation, Operation>>(num_edges);
+        for (int i = 0; i < num_edges; i++) {
+            //expecting "op1 op2" or "op1 op2 cost"
+            in.require(what + " " + (i+1));
+            Operation op1 = parseOperation(in, "first operation");
+            Operation op2 = parseOperation(in, "second operation");
             if (costs) {
-                Integer cost = Integer.parseInt(strings[2]);
-                edge = new Edge<Operation, Operation>(op1, op2, cost);
+                edges.add(new Edge<Operation, Operation>(op1, op2, in.nextInt("edge cost")));
             }
             else {
-                edge = new Edge<Operation, Operation>(op1, op2);
+                edges.add(new Edge<Operation, Operation>(op1, op2));
             }
-            edges.add(edge);
         }
         return edges;
     }
 
+    private void parseArchFile(InstanceTokenizer in) throws IOException {
+        in.require("grid size");
+        //num rows
+        int m = count(in, "number of rows");
+        //num columns
+        int n = count(in, "number of columns");
+
+        in.require("number of inputs and outputs");
+        int num_inputs = count(in, "number of inputs");
+        int num_outputs = count(in, "number of outputs");
+
+        in.require("number of sensors, detectors, and heaters");
+        int num_sensors = count(in, "number of sensors");
+        int num_detectors = count(in, "number of detectors");
+        int num_heaters = count(in, "number of heaters");
+
+        Vector<Location<Integer, Integer>> inputs = parseLocations(in, num_inputs, "input");
+        Vector<Location<Integer, Integer>> outputs = parseLocations(in, num_outputs, "output");
+        Vector<Location<Integer, Integer>> sensors = parseLocations(in, num_sensors, "sensor");
+        Vector<Location<Integer, Integer>> detectors = parseLocations(in, num_detectors, "detector");
+        Vector<Location<Integer, Integer>> heaters = parseLocations(in, num_heaters, "heater");
+
+        this.arch = new Architecture(m, n, inputs, outputs, sensors, detectors, heaters);
+    }
+
     /**
-     *
-     * @param reader
-     * @throws IOException
+     * @return the 1-based reservoir index on the line, checked against the reservoirs there are
      */
-    private void parseArchFile(BufferedReader reader) throws IOException {
-        try {
-            String line;
-            line = reader.readLine();
-            String[] strings = line.trim().split("\\s+");
-
-            //num rows
-            int m = Integer.parseInt(strings[0]);
-            //num columns
-            int n = Integer.parseInt(strings[1]);
-
-            line = reader.readLine();
-            strings = line.trim().split("\\s+");
-
-            // num inputs
-            int num_inputs = Integer.parseInt(strings[0]);
-            // num outputs
-            int num_outputs = Integer.parseInt(strings[1]);
-
-            line = reader.readLine();
-            strings = line.trim().split("\\s+");
-
-            // num sensors
-            int num_sensors = Integer.parseInt(strings[0]);
-            // num detectors
-            int num_detectors = Integer.parseInt(strings[1]);
-            // num heaters
-            int num_heaters = Integer.parseInt(strings[2]);
-
-
-            //get all input locations
-            Vector<Location<Integer, Integer>> inputs = parseLocations(reader, num_inputs);
-
-            //get all output locations
-            Vector<Location<Integer, Integer>> outputs = parseLocations(reader, num_outputs);
-
-            //get all sensor locations
-            Vector<Location<Integer, Integer>> sensors = parseLocations(reader, num_sensors);
-
-            //get all detector locations
-            Vector<Location<Integer, Integer>> detectors = parseLocations(reader, num_detectors);
-
-            //get all heater locations
-            Vector<Location<Integer, Integer>> heaters = parseLocations(reader, num_heaters);
-
-            this.arch = new Architecture(m, n, inputs, outputs, sensors, detectors, heaters);
-
-        } catch (IOException e) {
-            throw e;
+    private static int parseReservoir(InstanceTokenizer in, Vector<Location<Integer, Integer>> reservoirs,
+                                      String what) throws IOException {
+        int res = in.nextInt(what);
+        if (res < 1 || res > reservoirs.size()) {
+            throw in.error(what + " " + res + " does not exist (1.." + reservoirs.size() + ")");
         }
+        return res;
     }
 
-    private void parseOpsFile(BufferedReader reader) throws IOException {
-        String line;
-        line = reader.readLine();
-        String[] strings = line.trim().split("\\s*");
-
+    private void parseOpsFile(InstanceTokenizer in) throws IOException {
+        in.require("number of operations");
         //num ops
-        int num_ops = Integer.parseInt(strings[0]);
-        int res;
-        operations = new LinkedList<Operation>();
-        Operation op;
+        int num_ops = count(in, "number of operations");
+        operations = new ArrayList<Operation>(num_ops);
         for (int i = 1; i < num_ops+1; i++) {
-            line = reader.readLine();
-            strings = line.trim().split("\\s+");
             //operations should match: <type> <op specific stuff>
-            op = null;
-            switch (Integer.parseInt(strings[0])) { //type of operation
+            in.require("operation " + i);
+            int type = in.nextInt("operation type");
+            int res = 0;
+            double importance = 0.0;
+            switch (type) {
                 case 1: //input
-                    res = Integer.parseInt(strings[1]);
-                    op = new Input(i, res);
-                    ((AbstractOperation)op).setPlacement(getArch().getInputs().get(res-1).getX(), getArch().getInputs().get(res-1).getY());
+                    res = parseReservoir(in, arch.getInputs(), "input reservoir");
                     break;
                 case 2: //output
-                    res = Integer.parseInt(strings[1]);
-                    op = new Output(i, res);
-                    ((AbstractOperation)op).setPlacement(getArch().getOutputs().get(res-1).getX(), getArch().getOutputs().get(res-1).getY());
+                    res = parseReservoir(in, arch.getOutputs(), "output reservoir");
                     break;
                 case 3: //mix
-                    op = new Mix(i, Double.parseDouble(strings[1]));
-                    break;
-                case 4: // split
-                    op = new Split(i);
-                    break;
-                case 5: // merge
-                    op = new Merge(i);
-                    break;
-                case 6: // store
-                    op = new Store(i);
-                    break;
-                case 7: // sense
-                    op = new Sense(i);
-                    break;
-                case 8: // detect
-                    op = new Detect(i);
-                    break;
-                case 9: // heat
-                    op = new Heat(i);
+                    importance = in.nextDouble("mix importance");
                     break;
                 default:
-                    System.out.print("Invalid operation type");
+                    if (type < 1 || type > 9) {
+                        throw in.error("invalid operation type " + type);
+                    }
             }
-            operations.add(op);
+            operations.add(newOperation(i, type, res, importance, arch));
         }
     }
 
-    private void parseGraphsFile(BufferedReader reader) throws IOException {
-        String line;
-        line = reader.readLine();
-        String[] strings = line.trim().split("\\s+");
-
-        // num vertices (operations)
-        int num_vertices = Integer.parseInt(strings[0]);
-
+    /**
+     * @param id the operation's ID
+     * @param type the operation's type, 1 to 9
+     * @param res for inputs and outputs, the 1-based index of the reservoir on arch they are placed at
+     * @param importance for mixes, their importance
+     */
+    static Operation newOperation(int id, int type, int res, double importance, Architecture arch) {
+        AbstractOperation op;
+        switch (type) {
+            case 1: //input
+                op = new Input(id, res);
+                op.setPlacement(arch.getInputs().get(res-1).getX(), arch.getInputs().get(res-1).getY());
+                return op;
+            case 2: //output
+                op = new Output(id, res);
+                op.setPlacement(arch.getOutputs().get(res-1).getX(), arch.getOutputs().get(res-1).getY());
+                return op;
+            case 3: //mix
+                return new Mix(id, importance);
+            case 4: // split
+                return new Split(id);
+            case 5: // merge
+                return new Merge(id);
+            case 6: // store
+                return new Store(id);
+            case 7: // sense
+                return new Sense(id);
+            case 8: // detect
+                return new Detect(id);
+            case 9: // heat
+                return new Heat(id);
+            default:
+                throw new IllegalArgumentException("invalid operation type " + type);
+        }
+    }
+    private void parseGraphsFile(InstanceTokenizer in) throws IOException {
+        in.require("graph sizes");
+        // num vertices (operations), not checked: the operations are already known
+        count(in, "number of vertices");
         // num edges in interference graph
-        int num_int_edges = Integer.parseInt(strings[1]);
-
+        int num_int_edges = count(in, "number of interference edges");
         // num edges in communication graph
-        int num_comm_edges = Integer.parseInt(strings[2]);
+        int num_comm_edges = count(in, "number of communication edges");
 
-        //get interference graph edges
-        List<Edge<Operation, Operation>> edges = parseEdges(reader, num_int_edges, false);
-        //build interference graph
-        interferenceGraph = new Graph(operations, new LinkedList<>(edges));
-
-        edges.clear();
+        //build interference graph (the Graph constructor also compiles its CSR adjacency)
+        interferenceGraph = new Graph(operations, parseEdges(in, num_int_edges, false, "interference edge"));
 
         // get communication graph edges and costs
-        edges = parseEdges(reader, num_comm_edges, true);
-        //build communication graph
-        communicationGraph = new Graph(operations, new LinkedList<>(edges));
-
+        communicationGraph = new Graph(operations, parseEdges(in, num_comm_edges, true, "communication edge"));
     }
 
-    private void parseAlphaFile(BufferedReader reader) throws IOException {
-        String line = reader.readLine();
-        alpha = Double.parseDouble(line);
+    private void parseAlphaFile(InstanceTokenizer in) throws IOException {
+        in.require("alpha");
+        alpha = in.nextDouble("alpha");
     }
 
+    @Override
     public Architecture getArch() {
         return arch;
     }
 
+    @Override
     public List<Operation> getOperations() {
         return operations;
     }
 
+    @Override
     public Graph getInterferenceGraph() {
         return interferenceGraph;
     }
 
+    @Override
     public Graph getCommunicationGraph() {
         return communicationGraph;
     }
 
+    @Override
     public double getAlpha() {
         return alpha;
     }
@@ -0,0 +1,69 @@
+package misc;
+
+import operation.OperationSize;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decoded placement held as parallel primitive arrays indexed by operation (ID-1)
+ *
+ * One of these is kept per evaluation thread and overwritten by every decode, so nothing here should be kept past
+ *  the evaluation that filled it -- call toPlacement() for a solution that needs to outlive it.
+ */
+public class Phenotype {
+    public final int[] x;
+    public final int[] y;
+    //footprint on the grid, i.e. after applying the orientation
+    public final int[] width;
+    public final int[] height;
+    public final int[] orientation;
+    //mix size code (0: 2x2, 1: 2x3, 2: 1x4, 3: 2x4), -1 for operations that are not mixes
+    public final int[] sizeCode;
+
+    public double D_comm;
+    public double T_mix;
+    public double Obj;
+
+    /**
+     * @param size number of operations
+     */
+    public Phenotype(int size) {
+        this.x = new int[size];
+        this.y = new int[size];
+        this.width = new int[size];
+        this.height = new int[size];
+        this.orientation = new int[size];
+        this.sizeCode = new int[size];
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Materialises this phenotype as a Placement, with mix sizes given in their unrotated form
+     *
+     * @return a Placement that does not share any state with this phenotype
+     */
+    public Placement toPlacement() {
+        List<Location<Integer, Integer>> placement = new ArrayList<>(x.length);
+        Map<Integer, OperationSize<Integer, Integer>> mix_sizes = new HashMap<>();
+        Map<Integer, Integer> orientations = new HashMap<>();
+        for (int i = 0; i < x.length; i++) {
+            placement.add(new Location<>(x[i], y[i]));
+            orientations.put(i, orientation[i]);
+            if (sizeCode[i] >= 0) {
+                if (orientation[i] == 0) {
+                    mix_sizes.put(i, new OperationSize<>(height[i], width[i]));
+                }
+                else {
+                    mix_sizes.put(i, new OperationSize<>(width[i], height[i]));
+                }
+            }
+        }
+        return new Placement(placement, mix_sizes, orientations, D_comm, T_mix, Obj);
+    }
+}
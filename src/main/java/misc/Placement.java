@@ -2,7 +2,6 @@ package misc;
 
 import operation.OperationSize;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -13,14 +12,14 @@ import java.util.Map;
  *  All operation location placements, sizes of all mix operations, and evaluations of objective functions
  */
 public class Placement {
-    private final List<Location> placement;
-    private final Map<Integer, OperationSize> mix_sizes;
+    private final List<Location<Integer, Integer>> placement;
+    private final Map<Integer, OperationSize<Integer, Integer>> mix_sizes;
     private final Map<Integer, Integer> orientations;
     private final double D_comm;
     private final double T_mix;
     private final double Obj;
 
-    public Placement(List<Location> placement, Map<Integer, OperationSize> mix_sizes, Map<Integer, Integer> orientations, double d_comm, double t_mix, double obj) {
+    public Placement(List<Location<Integer, Integer>> placement, Map<Integer, OperationSize<Integer, Integer>> mix_sizes, Map<Integer, Integer> orientations, double d_comm, double t_mix, double obj) {
         this.placement = placement;
         this.mix_sizes = mix_sizes;
         this.orientations = orientations;
@@ -29,11 +28,11 @@ public class Placement {
         this.Obj = obj;
     }
 
-    public List<Location> getPlacement() {
+    public List<Location<Integer, Integer>> getPlacement() {
         return placement;
     }
 
-    public Map<Integer, OperationSize> getMix_sizes() {
+    public Map<Integer, OperationSize<Integer, Integer>> getMix_sizes() {
         return mix_sizes;
     }
 
@@ -53,16 +52,19 @@ public class Placement {
         return Obj;
     }
 
+    @Override
+    public int hashCode() {
+        return placement.hashCode() ^ mix_sizes.hashCode() ^ orientations.hashCode();
+    }
+
+    //two placements are equal if every operation has the same location, orientation, and mix size
     @Override
     public boolean equals(Object o) {
-        if (!(o instanceof ArrayList)) return false;
-        ArrayList<Location> loco = (ArrayList<Location>) o;
-        for (Location location : placement) {
-            if (loco.equals(location)) {
-                return false;
-            }
-        }
-        return true;
+        if (!(o instanceof Placement)) return false;
+        Placement placemento = (Placement) o;
+        return this.placement.equals(placemento.getPlacement()) &&
+                this.mix_sizes.equals(placemento.getMix_sizes()) &&
+                this.orientations.equals(placemento.getOrientations());
     }
 
 }
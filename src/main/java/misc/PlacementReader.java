@@ -0,0 +1,95 @@
+package misc;
+
+import operation.AbstractOperation;
+import operation.Input;
+import operation.Operation;
+import operation.Output;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads a placement.out written by PlacementWriter back into a Phenotype, e.g. to start an incremental re-placement
+ *  from it
+ *
+ * placement.out records where each operation sits and, for mixes, the footprint as placed, but not the orientation
+ *  of splits and merges: those come back with orientation 0 and their unrotated footprint.  Mixes also come back
+ *  with orientation 0 and sizeCode -1, their height and width as placed; telling the size and rotation apart is up
+ *  to whoever knows the mix sizes.  Inputs and outputs are put at their reservoirs, as the file only names those.
+ */
+public class PlacementReader {
+
+    private PlacementReader() {
+    }
+
+    /**
+     * @param file a placement.out
+     * @param operations the operations it places, in ID order
+     * @return the placement; its objective values are the ones in the file
+     * @throws InstanceFormatException if the file holds no placement, does not follow the format, or places
+     *                                 different operations
+     */
+    public static Phenotype read(Path file, List<Operation> operations) throws IOException {
+        String name = file.toString();
+        try (BufferedReader reader = Files.newBufferedReader(file, Charset.forName("UTF-8"))) {
+            String first = reader.readLine();
+            if (first != null && first.trim().equals(PlacementWriter.NO_SOLUTION)) {
+                throw new InstanceFormatException(name, 1, "the run that wrote it found no placement");
+            }
+        }
+
+        Phenotype sol = new Phenotype(operations.size());
+        try (InstanceTokenizer in = new InstanceTokenizer(FileChannel.open(file, StandardOpenOption.READ), name)) {
+            in.require("objective values");
+            sol.Obj = in.nextDouble("objective");
+            sol.D_comm = in.nextDouble("D_comm");
+            sol.T_mix = in.nextDouble("T_mix");
+
+            for (Operation op : operations) {
+                int i = op.getID() - 1;
+                in.require("placement of operation " + op.getID());
+                int type = in.nextInt("operation type");
+                if (type != op.getType()) {
+                    throw in.error("operation " + op.getID() + " has type " + op.getType() + " in the instance but " +
+                            type + " here");
+                }
+                sol.sizeCode[i] = -1;
+                sol.orientation[i] = 0;
+                if (op instanceof Input || op instanceof Output) {
+                    int reservoir = in.nextInt("reservoir");
+                    int expected = (op instanceof Input ? ((Input) op).getReservoir() : ((Output) op).getReservoir());
+                    if (reservoir != expected) {
+                        throw in.error("operation " + op.getID() + " uses reservoir " + expected +
+                                " in the instance but " + reservoir + " here");
+                    }
+                    Location<Integer, Integer> reservoirAt = ((AbstractOperation) op).getPlacement();
+                    sol.x[i] = reservoirAt.getX();
+                    sol.y[i] = reservoirAt.getY();
+                    sol.height[i] = 1;
+                    sol.width[i] = 1;
+                    continue;
+                }
+                sol.x[i] = in.nextInt("x");
+                sol.y[i] = in.nextInt("y");
+                if (type == 3) {
+                    sol.height[i] = in.nextInt("mix height");
+                    sol.width[i] = in.nextInt("mix width");
+                }
+                else {
+                    sol.height[i] = op.getSize().getHeight();
+                    sol.width[i] = op.getSize().getWidth();
+                }
+            }
+            if (in.nextLine()) {
+                throw in.error("more lines than the instance has operations (" + operations.size() + ")");
+            }
+        }
+        return sol;
+    }
+}
@@ -0,0 +1,75 @@
+package misc;
+
+import operation.Input;
+import operation.Operation;
+import operation.OperationSize;
+import operation.Output;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Formats a placement the way placement.out lays it out, without touching the operations:
+ *
+ *   Obj    D_comm    T_mix    alpha
+ *   then one line per operation, in ID order:
+ *     inputs and outputs:  type    reservoir
+ *     other operations:    type    x    y
+ *     mixes also append their size as placed (height and width swapped if rotated)
+ */
+public class PlacementWriter {
+
+    public static final String NO_SOLUTION = "No solution found.";
+
+    private PlacementWriter() {
+    }
+
+    /**
+     * @param placement the placement to format
+     * @param operations the operations it places, in ID order
+     * @param alpha the alpha the objective was computed with
+     * @return the lines of the output file
+     */
+    public static List<String> format(Placement placement, List<Operation> operations, double alpha) {
+        List<String> lines = new ArrayList<>(operations.size() + 1);
+        lines.add(String.valueOf(placement.getObj()) + "\t" +
+                String.valueOf(placement.getD_comm()) + "\t" +
+                String.valueOf(placement.getT_mix()) + "\t" +
+                String.valueOf(alpha));
+        for (Operation op : operations) {
+            if (op instanceof Input || op instanceof Output) {
+                lines.add(op.toString());
+                continue;
+            }
+            int i = op.getID() - 1;
+            Location<Integer, Integer> location = placement.getPlacement().get(i);
+            StringBuilder sb = new StringBuilder();
+            sb.append(op.getType()).append("\t").append(location.toString());
+            if (op.getType() == 3) {
+                OperationSize<Integer, Integer> size = placement.getMix_sizes().get(i);
+                Integer orientation = placement.getOrientations().get(i);
+                if (orientation != null && orientation == 1) {
+                    sb.append("\t").append(size.getWidth()).append("\t").append(size.getHeight());
+                }
+                else {
+                    sb.append("\t").append(size.getHeight()).append("\t").append(size.getWidth());
+                }
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    public static void write(Path file, Placement placement, List<Operation> operations, double alpha) throws IOException {
+        Files.write(file, format(placement, operations, alpha), Charset.forName("UTF-8"));
+    }
+
+    public static void writeNoSolution(Path file) throws IOException {
+        Files.write(file, Collections.singletonList(NO_SOLUTION), Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,168 @@
+package seeding;
+
+import graph.Graph;
+import misc.Architecture;
+import misc.FeasibilityRepair;
+import misc.OccupancyGrid;
+import misc.Phenotype;
+
+import java.util.Random;
+
+/**
+ * Builds placements greedily along the communication graph, for seeding an initial population
+ *
+ * Starting from the inputs and outputs, whose reservoirs are fixed, the communication graph is walked breadth first.
+ *  Each operation reached is placed at the cost-weighted median of its already-placed neighbours (which minimises
+ *  its share of D_comm) and then moved, as FeasibilityRepair would, to the nearest legal anchor clear of its placed
+ *  interference neighbours.  An operation that is not connected to anything placed yet starts a new walk from a
+ *  random cell.  Roots, neighbours, and ties between equally good medians are all taken in random order, so
+ *  repeated calls give different placements.
+ *
+ * The seeder is immutable and can be shared between threads.
+ */
+public class ConstructiveSeeder {
+
+    private final Architecture architecture;
+    private final Graph communicationGraph;
+    private final FeasibilityRepair repair;
+
+    /**
+     * @param arch the architecture placements are made on
+     * @param CG the communication graph, whose edges pull operations together
+     * @param repair decides which anchors are legal for which operation
+     */
+    public ConstructiveSeeder(Architecture arch, Graph CG, FeasibilityRepair repair) {
+        this.architecture = arch;
+        this.communicationGraph = CG;
+        this.repair = repair;
+    }
+
+    /**
+     * Places every operation that is not an input or output anew; sizes and orientations are kept, objective values
+     *  are left untouched and must be recomputed
+     *
+     * @param sol a decoded placement
+     * @param random source of the randomised tie-breaking
+     */
+    public void seed(Phenotype sol, Random random) {
+        int n = sol.size();
+        OccupancyGrid grid = new OccupancyGrid(architecture);
+        boolean[] settled = new boolean[n];
+        boolean[] queued = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        //the fixed operations are the first roots
+        for (int i = 0; i < n; i++) {
+            if (repair.isFixed(i)) {
+                settled[i] = true;
+                queued[i] = true;
+                queue[tail++] = i;
+            }
+        }
+        shuffle(queue, 0, tail, random);
+
+        while (head < n) {
+            if (head == tail) {
+                //nothing placed reaches the rest: start again from a random operation
+                int root = random.nextInt(n - tail);
+                for (int i = 0; i < n; i++) {
+                    if (!queued[i] && root-- == 0) {
+                        queued[i] = true;
+                        queue[tail++] = i;
+                        break;
+                    }
+                }
+            }
+
+            int u = queue[head++];
+            if (!settled[u]) {
+                placeNearNeighbours(sol, u, random, grid, settled);
+                settled[u] = true;
+            }
+
+            int first = tail;
+            for (int a = communicationGraph.getOffset(u); a < communicationGraph.getOffset(u+1); a++) {
+                int v = communicationGraph.getNeighbour(a);
+                if (!queued[v]) {
+                    queued[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+            shuffle(queue, first, tail, random);
+        }
+    }
+
+    private void placeNearNeighbours(Phenotype sol, int u, Random random, OccupancyGrid grid, boolean[] settled) {
+        int degree = communicationGraph.getOffset(u+1) - communicationGraph.getOffset(u);
+        int[] xs = new int[degree];
+        int[] ys = new int[degree];
+        int[] weights = new int[degree];
+        int k = 0;
+        for (int a = communicationGraph.getOffset(u); a < communicationGraph.getOffset(u+1); a++) {
+            int v = communicationGraph.getNeighbour(a);
+            if (settled[v]) {
+                xs[k] = sol.x[v];
+                ys[k] = sol.y[v];
+                weights[k] = communicationGraph.getEdgeCost(communicationGraph.getAdjacentEdge(a));
+                k++;
+            }
+        }
+
+        int x;
+        int y;
+        if (k == 0) {
+            x = 2 + random.nextInt(Math.max(1, architecture.getColumns() - 2));
+            y = 2 + random.nextInt(Math.max(1, architecture.getRows() - 2));
+        }
+        else {
+            x = weightedMedian(xs, weights.clone(), k, random);
+            y = weightedMedian(ys, weights, k, random);
+        }
+        repair.placeNear(sol, u, x, y, grid, settled);
+    }
+
+    /**
+     * @return a point minimising the weighted sum of distances to the first k values, chosen at random when a whole
+     *  range of points does; values and weights are reordered
+     */
+    private static int weightedMedian(int[] values, int[] weights, int k, Random random) {
+        //degrees are small, so an insertion sort is enough
+        for (int i = 1; i < k; i++) {
+            for (int j = i; j > 0 && values[j-1] > values[j]; j--) {
+                swap(values, j, j-1);
+                swap(weights, j, j-1);
+            }
+        }
+        long total = 0;
+        for (int i = 0; i < k; i++) {
+            total += weights[i];
+        }
+        long cumulative = 0;
+        int lower = values[k-1];
+        int upper = values[k-1];
+        for (int i = 0; i < k; i++) {
+            cumulative += weights[i];
+            if (2 * cumulative >= total) {
+                lower = values[i];
+                //exactly half the weight on either side: anything up to the next value is as good
+                upper = (2 * cumulative == total && i + 1 < k ? values[i+1] : lower);
+                break;
+            }
+        }
+        return lower + random.nextInt(upper - lower + 1);
+    }
+
+    private static void shuffle(int[] array, int from, int to, Random random) {
+        for (int i = to - 1; i > from; i--) {
+            swap(array, i, from + random.nextInt(i - from + 1));
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int t = array[i];
+        array[i] = array[j];
+        array[j] = t;
+    }
+}
@@ -0,0 +1,17 @@
+package seeding;
+
+import org.moeaframework.core.Solution;
+
+import java.util.List;
+
+/**
+ * A problem that can construct good starting solutions, read by SeededAlgorithms when the initial population is built
+ */
+public interface Seedable {
+
+    /**
+     * @param count number of solutions wanted
+     * @return count new, unevaluated solutions
+     */
+    List<Solution> newSeeds(int count);
+}
@@ -0,0 +1,43 @@
+package seeding;
+
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.Solution;
+import org.moeaframework.util.distributed.DistributedProblem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A DistributedProblem that is still Seedable, for evaluating a seeded run on several threads
+ *
+ * Executor.distributeOn() hides the problem behind a DistributedProblem, which SeededAlgorithms cannot seed from, and
+ *  which only evaluates its own FutureSolutions.  This wrapper takes the seeds from the problem it wraps and moves
+ *  their variables into solutions of its own.
+ */
+public class SeedableDistributedProblem extends DistributedProblem implements Seedable {
+
+    private final Seedable seedable;
+
+    /**
+     * @param problem the problem to evaluate and seed from
+     * @param executor evaluates solutions; shut down by the caller
+     */
+    public <P extends Problem & Seedable> SeedableDistributedProblem(P problem, ExecutorService executor) {
+        super(problem, executor);
+        this.seedable = problem;
+    }
+
+    @Override
+    public List<Solution> newSeeds(int count) {
+        List<Solution> seeds = new ArrayList<>(count);
+        for (Solution seed : seedable.newSeeds(count)) {
+            Solution solution = newSolution();
+            for (int v = 0; v < seed.getNumberOfVariables(); v++) {
+                solution.setVariable(v, seed.getVariable(v));
+            }
+            seeds.add(solution);
+        }
+        return seeds;
+    }
+}
@@ -0,0 +1,40 @@
+package seeding;
+
+import checkpoint.ResumableNSGAII;
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.Initialization;
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.operator.InjectedInitialization;
+import org.moeaframework.core.spi.AlgorithmProvider;
+import org.moeaframework.util.TypedProperties;
+
+import java.util.Properties;
+
+/**
+ * Makes "SeededNSGAII" available to MOEA's AlgorithmFactory (registered by Main with addProvider(), so it is asked
+ *  before the providers found through META-INF/services): NSGAII exactly as MOEA builds it, except that part of the
+ *  initial population comes from the problem's Seedable.newSeeds() and only the rest is random
+ *
+ *  seeding.fraction: fraction of the initial population that is seeded (default 0.25)
+ */
+public class SeededAlgorithms extends AlgorithmProvider {
+
+    public static final String NSGAII = "SeededNSGAII";
+
+    @Override
+    public Algorithm getAlgorithm(String name, Properties properties, Problem problem) {
+        if (!name.equalsIgnoreCase(NSGAII) || !(problem instanceof Seedable)) {
+            return null;
+        }
+        TypedProperties typedProperties = new TypedProperties(properties);
+        int populationSize = (int) typedProperties.getDouble("populationSize", 100);
+        double fraction = typedProperties.getDouble("seeding.fraction", 0.25);
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("seeding.fraction must be within [0, 1], was " + fraction);
+        }
+
+        Initialization initialization = new InjectedInitialization(problem, populationSize,
+                ((Seedable) problem).newSeeds((int) Math.round(fraction * populationSize)));
+        return new ResumableNSGAII(problem, typedProperties, initialization);
+    }
+}
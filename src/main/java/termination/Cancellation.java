@@ -0,0 +1,30 @@
+package termination;
+
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.TerminationCondition;
+
+/**
+ * Stops a run from another thread: once cancel() is called, the run ends after the generation in progress, keeping
+ *  whatever it has found so far
+ */
+public class Cancellation implements TerminationCondition {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+    }
+
+    @Override
+    public boolean shouldTerminate(Algorithm algorithm) {
+        return cancelled;
+    }
+}
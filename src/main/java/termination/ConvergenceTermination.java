@@ -0,0 +1,300 @@
+package termination;
+
+import org.moeaframework.core.Algorithm;
+import org.moeaframework.core.EvolutionaryAlgorithm;
+import org.moeaframework.core.NondominatedPopulation;
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.TerminationCondition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Stops a run once it stops making progress, checked once per generation
+ *
+ * Progress is measured on the current population:
+ *   - while nothing is feasible: the smallest total constraint violation
+ *   - afterwards: the best feasible objective (one objective) or the hypervolume of the feasible front (two
+ *     objectives), and the fraction of the population that is feasible
+ * A generation that improves on the best value seen so far by more than the rule's relative tolerance resets the
+ *  count; once the count reaches the rule's window the run stops.  The evaluation and wall-clock caps apply
+ *  regardless.
+ *
+ * The hypervolume is measured against a reference point fixed when the first feasible solution appears (the worst
+ *  value of each objective then, pushed out by its range), so values are comparable from generation to generation.
+ *  With more than two objectives it falls back to the sum of the per-objective best values.
+ *
+ * The progress made so far can be written out with a checkpoint and resumed, so a resumed run stops when the
+ *  interrupted one would have.
+ */
+public class ConvergenceTermination implements TerminationCondition {
+
+    private final StoppingRule rule;
+
+    private long start;
+    private int generations;
+    private int stalled;
+    private boolean feasible;
+    private double bestProgress;
+    private double bestRatio;
+    private double[] reference;
+    //set by resume() until the next initialize()
+    private boolean resumed;
+    private long elapsed;
+
+    //statistics of the last generation checked
+    private double feasibleRatio;
+    private double bestObjective;
+    private double hypervolume;
+    private double violation;
+
+    public ConvergenceTermination(StoppingRule rule) {
+        this.rule = rule;
+    }
+
+    @Override
+    public void initialize(Algorithm algorithm) {
+        start = System.currentTimeMillis();
+        if (resumed) {
+            start -= elapsed;
+            resumed = false;
+            return;
+        }
+        generations = 0;
+        stalled = 0;
+        feasible = false;
+        bestProgress = Double.POSITIVE_INFINITY;
+        bestRatio = 0.0;
+        reference = null;
+        feasibleRatio = 0.0;
+        bestObjective = Double.NaN;
+        hypervolume = Double.NaN;
+        violation = Double.NaN;
+    }
+
+    @Override
+    public boolean shouldTerminate(Algorithm algorithm) {
+        if (rule.getMaxEvaluations() > 0 && algorithm.getNumberOfEvaluations() >= rule.getMaxEvaluations()) {
+            return true;
+        }
+        if (rule.getMaxMillis() > 0 && System.currentTimeMillis() - start >= rule.getMaxMillis()) {
+            return true;
+        }
+        if (algorithm.getNumberOfEvaluations() == 0) {
+            //not initialised yet
+            return false;
+        }
+
+        generations++;
+        measure(algorithm instanceof EvolutionaryAlgorithm ?
+                ((EvolutionaryAlgorithm) algorithm).getPopulation() : algorithm.getResult());
+        return rule.getWindow() > 0 && stalled >= rule.getWindow();
+    }
+
+    private void measure(Population population) {
+        List<Solution> feasibleSolutions = new ArrayList<>();
+        double minViolation = Double.POSITIVE_INFINITY;
+        for (Solution solution : population) {
+            if (solution.violatesConstraints()) {
+                double total = 0.0;
+                for (double c : solution.getConstraints()) {
+                    total += Math.abs(c);
+                }
+                minViolation = Math.min(minViolation, total);
+            }
+            else {
+                feasibleSolutions.add(solution);
+            }
+        }
+        feasibleRatio = (population.size() == 0 ? 0.0 : (double) feasibleSolutions.size() / population.size());
+        violation = (feasibleSolutions.isEmpty() ? minViolation : 0.0);
+
+        double progress;
+        if (feasibleSolutions.isEmpty()) {
+            progress = minViolation;
+        }
+        else {
+            int objectives = feasibleSolutions.get(0).getNumberOfObjectives();
+            if (objectives == 1) {
+                bestObjective = Double.POSITIVE_INFINITY;
+                for (Solution solution : feasibleSolutions) {
+                    bestObjective = Math.min(bestObjective, solution.getObjective(0));
+                }
+                progress = bestObjective;
+            }
+            else {
+                if (reference == null) {
+                    reference = referencePoint(feasibleSolutions, objectives);
+                }
+                hypervolume = (objectives == 2 ? hypervolume(feasibleSolutions) : Double.NaN);
+                progress = (objectives == 2 ? -hypervolume : idealSum(feasibleSolutions, objectives));
+            }
+
+            //progress is only comparable within a phase: restart the baseline when the first feasible solution appears
+            if (!feasible) {
+                feasible = true;
+                bestProgress = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        boolean improved = false;
+        if (bestProgress - progress > rule.getTolerance() * Math.max(1.0, Math.abs(bestProgress)) ||
+                Double.isInfinite(bestProgress)) {
+            bestProgress = progress;
+            improved = true;
+        }
+        if (feasibleRatio - bestRatio > rule.getTolerance()) {
+            bestRatio = feasibleRatio;
+            improved = true;
+        }
+        stalled = (improved ? 0 : stalled + 1);
+    }
+
+    private static double[] referencePoint(List<Solution> solutions, int objectives) {
+        double[] min = new double[objectives];
+        double[] max = new double[objectives];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (Solution solution : solutions) {
+            for (int j = 0; j < objectives; j++) {
+                min[j] = Math.min(min[j], solution.getObjective(j));
+                max[j] = Math.max(max[j], solution.getObjective(j));
+            }
+        }
+        double[] reference = new double[objectives];
+        for (int j = 0; j < objectives; j++) {
+            reference[j] = max[j] + Math.max(1.0, max[j] - min[j]);
+        }
+        return reference;
+    }
+
+    /**
+     * Exact two-objective hypervolume of the nondominated feasible solutions, against the fixed reference point
+     */
+    private double hypervolume(List<Solution> solutions) {
+        List<Solution> front = new ArrayList<>();
+        for (Solution solution : new NondominatedPopulation(solutions)) {
+            if (solution.getObjective(0) < reference[0] && solution.getObjective(1) < reference[1]) {
+                front.add(solution);
+            }
+        }
+        Collections.sort(front, new Comparator<Solution>() {
+            @Override
+            public int compare(Solution a, Solution b) {
+                return Double.compare(a.getObjective(0), b.getObjective(0));
+            }
+        });
+        double volume = 0.0;
+        double ceiling = reference[1];
+        for (Solution solution : front) {
+            if (solution.getObjective(1) < ceiling) {
+                volume += (reference[0] - solution.getObjective(0)) * (ceiling - solution.getObjective(1));
+                ceiling = solution.getObjective(1);
+            }
+        }
+        return volume;
+    }
+
+    private static double idealSum(List<Solution> solutions, int objectives) {
+        double sum = 0.0;
+        for (int j = 0; j < objectives; j++) {
+            double best = Double.POSITIVE_INFINITY;
+            for (Solution solution : solutions) {
+                best = Math.min(best, solution.getObjective(j));
+            }
+            sum += best;
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the progress made so far: elapsed time, generations, the best values seen, and the reference point
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(System.currentTimeMillis() - start);
+        out.writeInt(generations);
+        out.writeInt(stalled);
+        out.writeBoolean(feasible);
+        out.writeDouble(bestProgress);
+        out.writeDouble(bestRatio);
+        out.writeInt(reference == null ? -1 : reference.length);
+        if (reference != null) {
+            for (double value : reference) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Picks up the progress that write() wrote; the next initialize() keeps it rather than starting afresh, and
+     *  counts the time from where it left off
+     */
+    public void resume(DataInput in) throws IOException {
+        elapsed = in.readLong();
+        generations = in.readInt();
+        stalled = in.readInt();
+        feasible = in.readBoolean();
+        bestProgress = in.readDouble();
+        bestRatio = in.readDouble();
+        int objectives = in.readInt();
+        reference = (objectives < 0 ? null : new double[objectives]);
+        for (int j = 0; j < objectives; j++) {
+            reference[j] = in.readDouble();
+        }
+        feasibleRatio = 0.0;
+        bestObjective = Double.NaN;
+        hypervolume = Double.NaN;
+        violation = Double.NaN;
+        resumed = true;
+    }
+
+    /**
+     * @return number of generations checked so far
+     */
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * @return number of consecutive generations without progress
+     */
+    public int getStalledGenerations() {
+        return stalled;
+    }
+
+    public double getFeasibleRatio() {
+        return feasibleRatio;
+    }
+
+    /**
+     * @return best feasible objective of the last generation, NaN with more than one objective or none feasible
+     */
+    public double getBestObjective() {
+        return bestObjective;
+    }
+
+    /**
+     * @return hypervolume of the last generation's feasible front, NaN unless there are two objectives
+     */
+    public double getHypervolume() {
+        return hypervolume;
+    }
+
+    /**
+     * @return smallest total constraint violation of the last generation, 0 once something is feasible
+     */
+    public double getViolation() {
+        return violation;
+    }
+
+    public boolean hasConverged() {
+        return rule.getWindow() > 0 && stalled >= rule.getWindow();
+    }
+}
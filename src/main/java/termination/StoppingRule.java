@@ -0,0 +1,92 @@
+package termination;
+
+/**
+ * When a run stops: once progress has stalled for a number of generations, or at an evaluation or wall-clock cap,
+ *  whichever comes first.  Immutable; every run asks for its own newCondition().
+ */
+public class StoppingRule {
+
+    //generations without progress before a run is considered converged
+    public static final int DEFAULT_WINDOW = 50;
+    //smallest relative change counted as progress
+    public static final double DEFAULT_TOLERANCE = 1e-4;
+    //backstop for instances that keep improving slowly
+    public static final long DEFAULT_MAX_EVALUATIONS = 1000000;
+    //shortest window scaleWindow() shrinks to
+    public static final int MIN_WINDOW = 10;
+
+    private final int window;
+    private final double tolerance;
+    private final long maxEvaluations;
+    private final long maxMillis;
+
+    /**
+     * @param window generations without progress before stopping, 0 to only stop at the caps
+     * @param tolerance smallest relative improvement counted as progress
+     * @param maxEvaluations evaluation cap, 0 for none
+     * @param maxMillis wall-clock cap in milliseconds, 0 for none
+     */
+    public StoppingRule(int window, double tolerance, long maxEvaluations, long maxMillis) {
+        if (window < 0 || tolerance < 0 || maxEvaluations < 0 || maxMillis < 0) {
+            throw new IllegalArgumentException("stopping rule settings must not be negative");
+        }
+        if (window == 0 && maxEvaluations == 0 && maxMillis == 0) {
+            throw new IllegalArgumentException("a run without a convergence window needs an evaluation or time cap");
+        }
+        this.window = window;
+        this.tolerance = tolerance;
+        this.maxEvaluations = maxEvaluations;
+        this.maxMillis = maxMillis;
+    }
+
+    public static StoppingRule getDefault() {
+        return new StoppingRule(DEFAULT_WINDOW, DEFAULT_TOLERANCE, DEFAULT_MAX_EVALUATIONS, 0);
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public long getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return the same rule with the evaluation cap divided between parts runs, e.g. the islands of one search
+     */
+    public StoppingRule split(int parts) {
+        return new StoppingRule(window, tolerance, (maxEvaluations + parts - 1) / parts, maxMillis);
+    }
+
+    /**
+     * @param fraction how much of the usual search is left, in (0, 1], e.g. the share of operations not pinned
+     * @return the same rule with the convergence window shrunk to that fraction of it, but no shorter than MIN_WINDOW
+     *         (or the window itself, if that is shorter); a rule without a window keeps none
+     */
+    public StoppingRule scaleWindow(double fraction) {
+        int scaled = Math.max(Math.min(window, MIN_WINDOW), (int) Math.ceil(window * fraction));
+        return new StoppingRule(scaled, tolerance, maxEvaluations, maxMillis);
+    }
+
+    /**
+     * @return a fresh condition for one run
+     */
+    public ConvergenceTermination newCondition() {
+        return new ConvergenceTermination(this);
+    }
+
+    @Override
+    public String toString() {
+        return "window " + window + " generations, tolerance " + tolerance +
+                (maxEvaluations > 0 ? ", at most " + maxEvaluations + " evaluations" : "") +
+                (maxMillis > 0 ? ", at most " + maxMillis + " ms" : "");
+    }
+}